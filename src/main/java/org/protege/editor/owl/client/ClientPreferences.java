@@ -24,6 +24,24 @@ public class ClientPreferences {
     
     private static final String PREF_TAB_NAMES = "PREFERRED_TAB_NAMES";
 
+    private static final String LISTENER_COALESCING_WINDOW = "LISTENER_COALESCING_WINDOW";
+
+    private static final int DEFAULT_LISTENER_COALESCING_WINDOW = 100; // in milliseconds
+
+    private static final String AUTO_REBASE_COMMITS = "AUTO_REBASE_COMMITS";
+
+    private static final String AUTO_REBASE_MAX_RETRIES = "AUTO_REBASE_MAX_RETRIES";
+
+    private static final int DEFAULT_AUTO_REBASE_MAX_RETRIES = 3;
+
+    private static final String PREFETCH_PROJECTS = "PREFETCH_PROJECTS";
+
+    private static final String PREFETCH_BANDWIDTH_LIMIT = "PREFETCH_BANDWIDTH_LIMIT";
+
+    private static final int DEFAULT_PREFETCH_BANDWIDTH_LIMIT = 1024; // in kilobytes per second
+
+    private static final String OPEN_EARLY = "OPEN_EARLY";
+
     public static synchronized ClientPreferences getInstance() {
         if (instance == null) {
             instance = new ClientPreferences();
@@ -73,6 +91,86 @@ public class ClientPreferences {
     	prefs.putStringList(PREF_TAB_NAMES, prefTabNames);
     }
     
+    /**
+     * Gets the time window, in milliseconds, within which change notifications of the session
+     * recorder are merged into one.
+     */
+    public int getListenerCoalescingWindow() {
+        Preferences prefs = getPreferences();
+        return prefs.getInt(LISTENER_COALESCING_WINDOW, DEFAULT_LISTENER_COALESCING_WINDOW);
+    }
+
+    public void setListenerCoalescingWindow(int window) {
+        Preferences prefs = getPreferences();
+        prefs.putInt(LISTENER_COALESCING_WINDOW, window);
+    }
+
+    /**
+     * Checks whether a commit that is rejected because the server has moved on should be
+     * rebased onto the new revisions and retried, instead of failing.
+     */
+    public boolean isAutoRebaseCommits() {
+        Preferences prefs = getPreferences();
+        return prefs.getBoolean(AUTO_REBASE_COMMITS, false);
+    }
+
+    public void setAutoRebaseCommits(boolean autoRebase) {
+        Preferences prefs = getPreferences();
+        prefs.putBoolean(AUTO_REBASE_COMMITS, autoRebase);
+    }
+
+    public int getAutoRebaseMaxRetries() {
+        Preferences prefs = getPreferences();
+        return prefs.getInt(AUTO_REBASE_MAX_RETRIES, DEFAULT_AUTO_REBASE_MAX_RETRIES);
+    }
+
+    public void setAutoRebaseMaxRetries(int maxRetries) {
+        Preferences prefs = getPreferences();
+        prefs.putInt(AUTO_REBASE_MAX_RETRIES, maxRetries);
+    }
+
+    /**
+     * Checks whether the snapshots and histories of the projects the user can open should be
+     * downloaded in the background after login, so that opening them later is fast.
+     */
+    public boolean isPrefetchProjects() {
+        Preferences prefs = getPreferences();
+        return prefs.getBoolean(PREFETCH_PROJECTS, false);
+    }
+
+    public void setPrefetchProjects(boolean prefetch) {
+        Preferences prefs = getPreferences();
+        prefs.putBoolean(PREFETCH_PROJECTS, prefetch);
+    }
+
+    /**
+     * Gets the bandwidth, in kilobytes per second, the background prefetch may use at most, or
+     * 0 for no limit.
+     */
+    public int getPrefetchBandwidthLimit() {
+        Preferences prefs = getPreferences();
+        return prefs.getInt(PREFETCH_BANDWIDTH_LIMIT, DEFAULT_PREFETCH_BANDWIDTH_LIMIT);
+    }
+
+    public void setPrefetchBandwidthLimit(int limit) {
+        Preferences prefs = getPreferences();
+        prefs.putInt(PREFETCH_BANDWIDTH_LIMIT, limit);
+    }
+
+    /**
+     * Checks whether a project should be opened, read-only, as soon as its snapshot is loaded,
+     * and catch up with the history of the server in the background.
+     */
+    public boolean isOpenEarly() {
+        Preferences prefs = getPreferences();
+        return prefs.getBoolean(OPEN_EARLY, false);
+    }
+
+    public void setOpenEarly(boolean openEarly) {
+        Preferences prefs = getPreferences();
+        prefs.putBoolean(OPEN_EARLY, openEarly);
+    }
+
     protected static Preferences getPreferences() {
         return PreferencesManager.getInstance().getApplicationPreferences(CLIENT_PREFERENCES);
     }
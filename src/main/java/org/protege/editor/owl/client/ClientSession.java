@@ -1,13 +1,21 @@
 package org.protege.editor.owl.client;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import org.protege.editor.core.ui.util.JOptionPaneEx;
 import org.protege.editor.core.ui.workspace.WorkspaceTab;
@@ -20,17 +28,25 @@ import org.protege.editor.owl.client.event.ClientSessionChangeEvent.EventCategor
 import org.protege.editor.owl.client.event.ClientSessionListener;
 import org.protege.editor.owl.client.event.CommitOperationEvent;
 import org.protege.editor.owl.client.event.CommitOperationListener;
+import org.protege.editor.owl.client.util.ClientScheduler;
+import org.protege.editor.owl.client.util.ClientScheduler.Lane;
+import org.protege.editor.owl.client.util.CoalescingDispatcher;
+import org.protege.editor.owl.client.util.GuiUtils;
 import org.protege.editor.owl.model.OWLEditorKitHook;
 import org.protege.editor.owl.model.event.EventType;
 import org.protege.editor.owl.model.event.OWLModelManagerChangeEvent;
 import org.protege.editor.owl.model.event.OWLModelManagerListener;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
 import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
 import org.protege.editor.owl.ui.OWLWorkspaceViewsTab;
 import org.protege.editor.owl.ui.ontology.OntologyPreferences;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 //import com.google.common.base.Optional;
 
@@ -44,6 +60,12 @@ public class ClientSession extends OWLEditorKitHook {
 
     public static String ID = "org.protege.editor.owl.client.ClientSession";
 
+    private static final Logger logger = LoggerFactory.getLogger(ClientSession.class);
+
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = 600; // in seconds
+
+    private static final long CHECKPOINT_SHUTDOWN_TIMEOUT = 10; // in seconds
+
     private Client activeClient;
 
     private Map<OWLOntologyID, VersionedOWLOntology> ontologyMap = new TreeMap<>();
@@ -53,6 +75,18 @@ public class ClientSession extends OWLEditorKitHook {
     private Set<ClientSessionListener> clientSessionListeners = new HashSet<>();
 
     private Set<CommitOperationListener> commitListeners = new HashSet<>();
+
+    private Set<OWLOntologyID> pendingCommits = new HashSet<>();
+
+    private Set<OWLOntologyID> catchingUp = new HashSet<>();
+
+    private CoalescingDispatcher catchUpProgress;
+
+    private ScheduledExecutorService checkpointService;
+
+    private ScheduledFuture<?> checkpointTask;
+
+    private ProjectPrefetcher prefetcher;
     
     private OWLModelManagerListener changeActiveProject = new OWLModelManagerListener() {
         @Override
@@ -70,6 +104,16 @@ public class ClientSession extends OWLEditorKitHook {
     @Override
     public void initialise() throws Exception {
         getEditorKit().getOWLModelManager().addListener(changeActiveProject);        
+        catchUpProgress = new CoalescingDispatcher("Catch-up Notifications",
+                ClientPreferences.getInstance().getListenerCoalescingWindow(), SwingUtilities::invokeLater,
+                (eventCount, changeCount) -> {
+                    synchronized (catchingUp) {
+                        if (catchingUp.isEmpty()) {
+                            return; // caught up in the meantime
+                        }
+                    }
+                    fireChangeEvent(EventCategory.CATCHING_UP);
+                });
     }
 
     public void fireChangeEvent(EventCategory category) {
@@ -113,6 +157,7 @@ public class ClientSession extends OWLEditorKitHook {
         		((OWLWorkspaceViewsTab) admin).fireUpViews();
             }
             fireChangeEvent(EventCategory.USER_LOGIN);
+            startPrefetch();
         }
         else {
             if (isPreviouslyLoggedIn(client)) {
@@ -147,7 +192,7 @@ public class ClientSession extends OWLEditorKitHook {
         registerVersionOntology(versionOntology.getOntology().getOntologyID(), versionOntology);
         getEditorKit().getOWLModelManager().setActiveOntology(versionOntology.getOntology());
         fireChangeEvent(EventCategory.OPEN_PROJECT);
-
+        startCheckpoints();
     }
 
     public ProjectId getActiveProject() {
@@ -166,7 +211,87 @@ public class ClientSession extends OWLEditorKitHook {
     }
 
 
+    /**
+     * Marks the versioned ontology as having a commit on its way to the server, or no longer.
+     * Listeners get a {@link EventCategory#COMMIT_PENDING} or {@link EventCategory#COMMIT_FINISHED}
+     * event. To be called on the event dispatch thread.
+     */
+    public void setCommitPending(VersionedOWLOntology versionOntology, boolean pending) {
+        OWLOntologyID ontologyId = versionOntology.getOntology().getOntologyID();
+        boolean changed;
+        synchronized (pendingCommits) {
+            changed = pending ? pendingCommits.add(ontologyId) : pendingCommits.remove(ontologyId);
+        }
+        if (changed) {
+            fireChangeEvent(pending ? EventCategory.COMMIT_PENDING : EventCategory.COMMIT_FINISHED);
+        }
+    }
+
+    public boolean hasPendingCommit(VersionedOWLOntology versionOntology) {
+        synchronized (pendingCommits) {
+            return pendingCommits.contains(versionOntology.getOntology().getOntologyID());
+        }
+    }
+
+    /**
+     * Marks the versioned ontology as opened early and still catching up with the server head,
+     * or no longer. While catching up the ontology is shown read-only and cannot be committed or
+     * updated. Listeners get a {@link EventCategory#CATCHING_UP} or {@link EventCategory#CAUGHT_UP}
+     * event; {@link HistoryCatchUp} fires further CATCHING_UP events as it makes progress. To be
+     * called on the event dispatch thread.
+     */
+    public void setCatchingUp(VersionedOWLOntology versionOntology, boolean catchingUp) {
+        OWLOntologyID ontologyId = versionOntology.getOntology().getOntologyID();
+        boolean changed;
+        synchronized (this.catchingUp) {
+            changed = catchingUp ? this.catchingUp.add(ontologyId) : this.catchingUp.remove(ontologyId);
+        }
+        if (changed) {
+            fireChangeEvent(catchingUp ? EventCategory.CATCHING_UP : EventCategory.CAUGHT_UP);
+            getEditorKit().getWorkspace().recheckPlugins(); // the views are read-only while catching up
+        }
+    }
+
+    public boolean isCatchingUp(VersionedOWLOntology versionOntology) {
+        synchronized (catchingUp) {
+            return catchingUp.contains(versionOntology.getOntology().getOntologyID());
+        }
+    }
+
+    /*
+     * Notifies the listeners, at most once per coalescing window, that an ontology caught up with
+     * the given number of changes.
+     */
+    void signalCatchUpProgress(int changeCount) {
+        catchUpProgress.signal(changeCount);
+    }
+
+    /**
+     * Applies changes that came from the server to the ontology, without recording them as local
+     * edits, and brings the search index up to date with them. To be called on the event dispatch
+     * thread, where the user's edits are applied too, e.g., from a task run with
+     * {@link GuiUtils#invokeAndWait(java.util.concurrent.Callable)}.
+     */
+    public void applyRemoteChanges(OWLOntology ontology, List<OWLOntologyChange> changes) {
+        SessionRecorder sessionRecorder = SessionRecorder.getInstance(getEditorKit());
+        sessionRecorder.stopRecordingOnThisThread();
+        try {
+            ontology.getOWLOntologyManager().applyChanges(changes);
+            getEditorKit().getSearchManager().updateIndex(changes);
+        }
+        finally {
+            sessionRecorder.startRecordingOnThisThread();
+        }
+    }
+
     public void clear() {
+        // the synchronization and transfers started for this user are of no use any more
+        ClientScheduler.getInstance().cancelAll(Lane.BACKGROUND);
+        ClientScheduler.getInstance().cancelAll(Lane.BULK);
+        ClientScheduler.getInstance().cancelAll(Lane.PREFETCH);
+        stopPrefetch();
+        stopCheckpoints();
+        submitCheckpoints(); // while the client is still active
     	activeClient = null;
         closeOpenVersionedOntologies();
         unregisterAllProjects();
@@ -176,6 +301,8 @@ public class ClientSession extends OWLEditorKitHook {
     }
     
     public void reset() {
+        stopCheckpoints();
+        submitCheckpoints();
         closeOpenVersionedOntologies();
         unregisterAllProjects();
         unregisterAllVersionOntologies();
@@ -225,9 +352,180 @@ public class ClientSession extends OWLEditorKitHook {
         return Optional.empty();
     }
 
+    /*
+     * Periodically writes the local head checkpoints of the open projects, so that a session that
+     * is not closed normally still leaves a recent checkpoint behind.
+     */
+    private synchronized void startCheckpoints() {
+        if (checkpointTask != null || !hasActiveClient()) {
+            return;
+        }
+        long interval = DEFAULT_CHECKPOINT_INTERVAL;
+        try {
+            String interval_s = getActiveClient().getConfig().getServerProperties().get("checkpoint_interval");
+            if (interval_s != null) {
+                interval = Long.parseLong(interval_s);
+            }
+        }
+        catch (Exception e) {
+            logger.warn("Unable to read the checkpoint interval, using the default of " + interval + " seconds", e);
+        }
+        if (checkpointService == null) {
+            checkpointService = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread th = new Thread(r, "Client Checkpoints");
+                th.setDaemon(true);
+                th.setPriority(Thread.MIN_PRIORITY);
+                return th;
+            });
+        }
+        checkpointTask = checkpointService.scheduleWithFixedDelay(this::writeCheckpoints, interval, interval,
+                TimeUnit.SECONDS);
+    }
+
+    private synchronized void stopCheckpoints() {
+        if (checkpointTask != null) {
+            // interrupts a periodic run that is still waiting for its copies
+            checkpointTask.cancel(true);
+            checkpointTask = null;
+        }
+    }
+
+    /**
+     * Writes a local head checkpoint for each open project that has no uncommitted changes and
+     * whose checkpoint is not at its head revision yet. The ontologies are copied on the event
+     * dispatch thread, where they are edited and updated, and the copies are written out on the
+     * calling thread, which must therefore not be the event dispatch thread.
+     */
+    public void writeCheckpoints() {
+        if (!(getActiveClient() instanceof LocalHttpClient)) {
+            return;
+        }
+        LocalHttpClient client = (LocalHttpClient) getActiveClient();
+        try {
+            Map<ProjectId, VersionedOWLOntology> projects = GuiUtils.invokeAndWait(this::getCheckpointCandidates);
+            projects.entrySet().removeIf(e -> client.hasCheckpoint(e.getKey(), e.getValue().getHeadRevision()));
+            if (!projects.isEmpty()) {
+                writeCheckpoints(client, GuiUtils.invokeAndWait(() -> copyCheckpoints(projects)));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e) {
+            logger.warn("Unable to write the checkpoints of the open projects", e);
+        }
+    }
+
+    /*
+     * Copies the open projects on the event dispatch thread and leaves writing them out to the
+     * checkpoint thread, so that closing the projects does not wait for the disk.
+     */
+    private void submitCheckpoints() {
+        if (!(getActiveClient() instanceof LocalHttpClient) || checkpointService == null) {
+            return;
+        }
+        LocalHttpClient client = (LocalHttpClient) getActiveClient();
+        try {
+            List<CheckpointCopy> copies = GuiUtils.invokeAndWait(() -> copyCheckpoints(getCheckpointCandidates()));
+            checkpointService.execute(() -> writeCheckpoints(client, copies));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e) {
+            logger.warn("Unable to copy the open projects for their checkpoints", e);
+        }
+    }
+
+    /*
+     * Gets the open projects that have no uncommitted changes, on the event dispatch thread.
+     */
+    private Map<ProjectId, VersionedOWLOntology> getCheckpointCandidates() {
+        SessionRecorder sessionRecorder = SessionRecorder.getInstance(getEditorKit());
+        Map<ProjectId, VersionedOWLOntology> projects = new HashMap<>();
+        for (Map.Entry<OWLOntologyID, VersionedOWLOntology> entry : ontologyMap.entrySet()) {
+            ProjectId projectId = projectMap.get(entry.getKey());
+            if (projectId != null && !sessionRecorder.hasUncommittedChanges(entry.getKey())
+                    && !isCatchingUp(entry.getValue())) {
+                projects.put(projectId, entry.getValue());
+            }
+        }
+        return projects;
+    }
+
+    /*
+     * Copies the given projects at their head revisions, on the event dispatch thread. Projects that
+     * were closed or edited in the meantime are left out.
+     */
+    private List<CheckpointCopy> copyCheckpoints(Map<ProjectId, VersionedOWLOntology> projects) {
+        SessionRecorder sessionRecorder = SessionRecorder.getInstance(getEditorKit());
+        List<CheckpointCopy> copies = new ArrayList<>();
+        for (Map.Entry<ProjectId, VersionedOWLOntology> entry : projects.entrySet()) {
+            OWLOntologyID ontologyId = entry.getValue().getOntology().getOntologyID();
+            if (ontologyMap.get(ontologyId) != entry.getValue() || sessionRecorder.hasUncommittedChanges(ontologyId)) {
+                continue;
+            }
+            copies.add(new CheckpointCopy(entry.getKey(), entry.getValue().getChangeHistory().getBaseRevision(),
+                    entry.getValue().getHeadRevision(), SegmentedSnapShot.Contents.of(entry.getValue().getOntology())));
+        }
+        return copies;
+    }
+
+    private static void writeCheckpoints(LocalHttpClient client, List<CheckpointCopy> copies) {
+        for (CheckpointCopy copy : copies) {
+            client.writeCheckpoint(copy.projectId, copy.baseRevision, copy.revision, copy.contents);
+        }
+    }
+
+    private static final class CheckpointCopy {
+
+        private final ProjectId projectId;
+        private final DocumentRevision baseRevision;
+        private final DocumentRevision revision;
+        private final SegmentedSnapShot.Contents contents;
+
+        CheckpointCopy(ProjectId projectId, DocumentRevision baseRevision, DocumentRevision revision,
+                SegmentedSnapShot.Contents contents) {
+            this.projectId = projectId;
+            this.baseRevision = baseRevision;
+            this.revision = revision;
+            this.contents = contents;
+        }
+    }
+
+    /*
+     * Starts downloading the projects of the user in the background, if enabled in the client
+     * preferences.
+     */
+    private synchronized void startPrefetch() {
+        if (!ClientPreferences.getInstance().isPrefetchProjects() || !(getActiveClient() instanceof LocalHttpClient)) {
+            return;
+        }
+        prefetcher = new ProjectPrefetcher((LocalHttpClient) getActiveClient(), projectMap::containsValue);
+        prefetcher.start();
+    }
+
+    private synchronized void stopPrefetch() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+            prefetcher = null;
+        }
+    }
+
     @Override
     public void dispose() throws Exception {
+        stopPrefetch();
+        stopCheckpoints();
+        submitCheckpoints();
+        if (checkpointService != null) {
+            checkpointService.shutdown();
+            if (!checkpointService.awaitTermination(CHECKPOINT_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                logger.warn("The checkpoints of the open projects were not written in time");
+                checkpointService.shutdownNow();
+            }
+        }
         getEditorKit().getOWLModelManager().removeListener(changeActiveProject);
+        catchUpProgress.dispose();
     }
 
     private void registerProject(OWLOntologyID ontologyId, ProjectId projectId) {
@@ -244,6 +542,9 @@ public class ClientSession extends OWLEditorKitHook {
 
     private void unregisterAllVersionOntologies() {
         ontologyMap.clear();
+        synchronized (catchingUp) {
+            catchingUp.clear(); // stops catching up with the closed projects
+        }
     }
 
 }
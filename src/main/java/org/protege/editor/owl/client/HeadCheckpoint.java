@@ -0,0 +1,139 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * A local binary copy of a project ontology at a given head revision. Reopening
+ * the project can start from the checkpoint and apply only the revisions that
+ * came after it, instead of replaying the whole history on top of the server
+ * snapshot.
+ *
+ * The checkpoint is tagged with its revision, with the checksum of the server
+ * snapshot it was built from and with the revision that snapshot is at, see
+ * {@link RevisionTag}. The tag is written last and removed first, so a
+ * checkpoint without a tag is never used, and a tag with a different snapshot
+ * checksum marks the checkpoint as stale.
+ */
+public class HeadCheckpoint {
+
+	private static final Logger logger = LoggerFactory.getLogger(HeadCheckpoint.class);
+
+	private static final String CHECKPOINT = "history-checkpoint";
+	private static final String CHECKPOINT_TAG = "history-checkpoint-tag";
+
+	private final ProjectId projectId;
+
+	public HeadCheckpoint(@Nonnull ProjectId projectId) {
+		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		this.projectId = projectId;
+	}
+
+	/**
+	 * Gets the revision of the checkpoint, provided that it was built from the
+	 * server snapshot with the given checksum. A stale checkpoint is deleted.
+	 */
+	public Optional<DocumentRevision> getRevision(@Nonnull String snapshotChecksum) {
+		Optional<File> tagFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT_TAG);
+		Optional<File> checkpointFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT);
+		if (!tagFile.isPresent() || !checkpointFile.isPresent() || !checkpointFile.get().exists()) {
+			return Optional.empty();
+		}
+		try {
+			Optional<RevisionTag> tag = RevisionTag.read(tagFile.get());
+			if (tag.isPresent() && !tag.get().isOnSnapshot(snapshotChecksum)) {
+				logger.info("Discarding stale checkpoint of " + projectId);
+				clear();
+				return Optional.empty();
+			}
+			return tag.map(RevisionTag::getRevision);
+		} catch (IOException e) {
+			logger.warn("Unable to read checkpoint tag of " + projectId + ", discarding the checkpoint", e);
+			clear();
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Gets the revision of the server snapshot the checkpoint was built from, i.e.,
+	 * the base revision of the history that led to it. Checkpoints written before
+	 * it was recorded are taken to start from the first revision.
+	 */
+	public DocumentRevision getBaseRevision() {
+		Optional<File> tagFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT_TAG);
+		try {
+			if (tagFile.isPresent()) {
+				Optional<RevisionTag> tag = RevisionTag.read(tagFile.get());
+				if (tag.isPresent() && tag.get().getBaseRevision().isPresent()) {
+					return tag.get().getBaseRevision().get();
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Unable to read the base revision of the checkpoint of " + projectId, e);
+		}
+		return DocumentRevision.START_REVISION;
+	}
+
+	/**
+	 * Gets the size of the checkpoint file, 0 when there is none.
+	 */
+	public long getSize() {
+		Optional<File> checkpointFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT);
+		return checkpointFile.isPresent() ? checkpointFile.get().length() : 0;
+	}
+
+	/**
+	 * Loads the checkpoint into a new ontology of the given manager.
+	 */
+	public OWLOntology load(OWLOntologyManager manager) throws IOException, OWLOntologyCreationException {
+		File checkpointFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT)
+				.orElseThrow(() -> new IOException("Checkpoint directory of " + projectId + " is not available"));
+		return LocalHttpClient.readBinaryOntology(manager, checkpointFile);
+	}
+
+	/**
+	 * Writes the copied contents of the ontology as the checkpoint for the given
+	 * revision, reached from the snapshot at the base revision, replacing the
+	 * previous checkpoint.
+	 */
+	void write(SegmentedSnapShot.Contents contents, DocumentRevision baseRevision, DocumentRevision revision,
+			@Nonnull String snapshotChecksum) throws IOException {
+		File checkpointFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT)
+				.orElseThrow(() -> new IOException("Checkpoint directory of " + projectId + " is not available"));
+		File tagFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT_TAG).get();
+		File tempFile = new File(checkpointFile.getAbsolutePath() + ".tmp");
+		try {
+			LocalHttpClient.writeBinaryOntology(contents, tempFile);
+			Files.deleteIfExists(tagFile.toPath()); // invalidate the old checkpoint before replacing it
+			Files.move(tempFile.toPath(), checkpointFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+		new RevisionTag(revision, snapshotChecksum, Optional.of(baseRevision)).write(tagFile);
+		logger.info("Wrote checkpoint of " + projectId + " at revision " + revision);
+	}
+
+	public void clear() {
+		Optional<File> tagFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT_TAG);
+		if (tagFile.isPresent()) {
+			tagFile.get().delete();
+		}
+		Optional<File> checkpointFile = LocalHttpClient.getProjectFile(projectId, CHECKPOINT);
+		if (checkpointFile.isPresent()) {
+			checkpointFile.get().delete();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import org.protege.editor.owl.client.api.exception.AuthorizationException;
+import org.protege.editor.owl.client.api.exception.LoginTimeoutException;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+
+/**
+ * Watches the head revision of a project over a long-poll channel and reports each time it
+ * moves, so that new revisions can be pulled as soon as they are committed instead of at the
+ * next polling interval.
+ *
+ * The watcher gives up, and reports that the channel is unavailable, when the server does not
+ * support it, when the user is no longer authorized, or after repeated failures. The caller is
+ * then expected to fall back to polling.
+ */
+public class HeadWatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(HeadWatcher.class);
+
+	private static final int POLL_TIMEOUT = 30; // in seconds, kept below proxy idle timeouts
+
+	private static final int MAX_FAILURES = 5;
+
+	private static final long RETRY_DELAY = 5000; // in milliseconds
+
+	private final LocalHttpClient client;
+	private final VersionedOWLOntology vont;
+	private final ProjectId projectId;
+	private final Runnable onHeadChanged;
+	private final Runnable onUnavailable;
+
+	private volatile boolean running = false;
+
+	public HeadWatcher(LocalHttpClient client, VersionedOWLOntology vont, ProjectId projectId,
+			Runnable onHeadChanged, Runnable onUnavailable) {
+		this.client = client;
+		this.vont = vont;
+		this.projectId = projectId;
+		this.onHeadChanged = onHeadChanged;
+		this.onUnavailable = onUnavailable;
+	}
+
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		Thread th = new Thread(this::watch, "Client Head Watcher");
+		th.setDaemon(true);
+		th.start();
+	}
+
+	/**
+	 * Stops watching. A long poll that is in progress is left to time out, its outcome is
+	 * ignored.
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	private void watch() {
+		// Track the last head seen on the server rather than the local one, so that a pending
+		// update does not make the server answer again straight away
+		DocumentRevision knownHead = vont.getHeadRevision();
+		int failures = 0;
+		while (running) {
+			try {
+				Optional<DocumentRevision> newHead = client.awaitHeadChange(vont, knownHead, projectId, POLL_TIMEOUT);
+				failures = 0;
+				if (!client.isHeadWatchSupported()) {
+					giveUp();
+				}
+				else if (newHead.isPresent() && running && !newHead.get().sameAs(knownHead)) {
+					knownHead = newHead.get();
+					logger.info("Project head moved to " + knownHead);
+					onHeadChanged.run();
+				}
+			}
+			catch (LoginTimeoutException | AuthorizationException e) {
+				logger.info("Stopped watching the project head: " + e.getMessage());
+				giveUp();
+			}
+			catch (Exception e) {
+				if (++failures >= MAX_FAILURES) {
+					logger.warn("Unable to watch the project head, falling back to polling", e);
+					giveUp();
+				}
+				else {
+					pause();
+				}
+			}
+		}
+	}
+
+	private void giveUp() {
+		if (running) {
+			running = false;
+			onUnavailable.run();
+		}
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(RETRY_DELAY);
+		}
+		catch (InterruptedException e) {
+			running = false;
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import org.protege.editor.owl.client.api.OperationHandle;
+import org.protege.editor.owl.client.event.ClientSessionChangeEvent.EventCategory;
+import org.protege.editor.owl.client.util.ClientScheduler;
+import org.protege.editor.owl.client.util.ClientScheduler.Lane;
+import org.protege.editor.owl.client.util.ClientUtils;
+import org.protege.editor.owl.client.util.GuiUtils;
+import org.protege.editor.owl.server.versioning.ChangeHistoryUtils;
+import org.protege.editor.owl.server.versioning.api.ChangeHistory;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Brings a project that was opened early, i.e., as soon as its snapshot or checkpoint was
+ * loaded, up to the server head it was opened against. The pending revisions are applied in
+ * order, in batches, each as a task of its own on the background lane of the client scheduler.
+ * Like the changes of an update, a batch is applied on the event dispatch thread under the sync
+ * lock, and the versioned ontology moves on with it.
+ *
+ * While catching up the project is read-only, see {@link ClientSession#isCatchingUp}. The
+ * progress is reported to the session listeners as {@link EventCategory#CATCHING_UP} events,
+ * merged by the session to at most one per coalescing window. Catching up stops when the
+ * project is closed; if a batch fails, the project is left at the last revision applied, from
+ * where an update takes over.
+ */
+public class HistoryCatchUp {
+
+	private static final Logger logger = LoggerFactory.getLogger(HistoryCatchUp.class);
+
+	private static final int BATCH_SIZE = 100; // in revisions
+
+	private final ClientSession session;
+	private final LocalHttpClient client;
+	private final ProjectId projectId;
+	private final VersionedOWLOntology vont;
+	private final ChangeHistory pendingHistory;
+	private final List<DocumentRevision> revisions;
+	private final OperationHandle handle;
+
+	private final long startTime = System.currentTimeMillis();
+
+	public HistoryCatchUp(ClientSession session, LocalHttpClient client, ProjectId projectId,
+			VersionedOWLOntology vont, ChangeHistory pendingHistory) {
+		this.session = session;
+		this.client = client;
+		this.projectId = projectId;
+		this.vont = vont;
+		this.pendingHistory = pendingHistory;
+		revisions = new ArrayList<>(pendingHistory.getRevisions().keySet());
+		handle = new OperationHandle("Catch up " + projectId.get());
+		handle.addRevisionsExpected(revisions.size());
+	}
+
+	/**
+	 * Starts applying the pending revisions. The project is to be marked as catching up in the
+	 * client session beforehand.
+	 */
+	public void start() {
+		logger.info(String.format("Catching up %s with %d revision(s) in the background", projectId,
+			revisions.size()));
+		submit(0);
+	}
+
+	private void submit(int from) {
+		ClientScheduler.getInstance().submit(Lane.BACKGROUND, () -> applyBatch(from));
+	}
+
+	private void applyBatch(int from) {
+		DocumentRevision start = (from == 0) ? pendingHistory.getBaseRevision() : revisions.get(from - 1);
+		int count = Math.min(BATCH_SIZE, revisions.size() - from);
+		try (OperationHandle.Scope scope = handle.attach()) {
+			ChangeHistory batch = (count == revisions.size())
+				? pendingHistory
+				: ChangeHistoryUtils.crop(pendingHistory, start, count);
+			List<OWLOntologyChange> changes = ChangeHistoryUtils.getOntologyChanges(batch, vont.getOntology());
+			Lock lock = ClientScheduler.getInstance().getSyncLock();
+			lock.lockInterruptibly();
+			try {
+				if (!session.isCatchingUp(vont) || !vont.getHeadRevision().sameAs(start)) {
+					logger.info("Stopped catching up " + projectId + ", the project was closed or updated");
+					finish();
+					return;
+				}
+				GuiUtils.invokeAndWait(() -> {
+					session.applyRemoteChanges(vont.getOntology(), changes);
+					vont.update(batch);
+					return null;
+				});
+			}
+			finally {
+				lock.unlock();
+			}
+			ClientUtils.loadMissingImports(vont.getOntology(), vont.getOntology().getOWLOntologyManager());
+			client.recordIndexedRevision(projectId, start, vont.getHeadRevision());
+			handle.addRevisionsApplied(count);
+			session.signalCatchUpProgress(changes.size());
+		}
+		catch (InterruptedException e) {
+			logger.info("Stopped catching up " + projectId + ", interrupted");
+			finish();
+			return;
+		}
+		catch (Exception e) {
+			logger.error("Unable to catch up " + projectId + ", an update will fetch the remaining revisions", e);
+			finish();
+			return;
+		}
+		if (from + count < revisions.size()) {
+			submit(from + count);
+		}
+		else {
+			logger.info(String.format("Caught up %s with %d revision(s) in %d ms", projectId, revisions.size(),
+				System.currentTimeMillis() - startTime));
+			finish();
+		}
+	}
+
+	private void finish() {
+		handle.finish();
+		SwingUtilities.invokeLater(() -> session.setCatchingUp(vont, false));
+	}
+}
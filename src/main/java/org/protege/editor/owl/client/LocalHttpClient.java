@@ -16,29 +16,40 @@ import edu.stanford.protege.metaproject.impl.ServerStatus;
 import edu.stanford.protege.metaproject.serialization.DefaultJsonSerializer;
 import io.undertow.util.StatusCodes;
 import okhttp3.*;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
 import org.protege.editor.owl.client.api.Client;
+import org.protege.editor.owl.client.api.EarlyOpenResult;
 import org.protege.editor.owl.client.api.OpenProjectResult;
+import org.protege.editor.owl.client.api.OperationHandle;
 import org.protege.editor.owl.client.api.UserInfo;
 import org.protege.editor.owl.client.api.exception.*;
 import org.protege.editor.owl.client.event.ClientSessionChangeEvent;
 import org.protege.editor.owl.client.event.ClientSessionListener;
+import org.protege.editor.owl.client.util.ClientScheduler;
+import org.protege.editor.owl.client.util.ClientScheduler.Lane;
 import org.protege.editor.owl.client.util.ClientUtils;
 import org.protege.editor.owl.client.util.Config;
+import org.protege.editor.owl.client.util.GzipRequestBody;
+import org.protege.editor.owl.client.util.ObjectStreamRequestBody;
+import org.protege.editor.owl.client.util.ProgressInterceptor;
 import org.protege.editor.owl.server.api.CommitBundle;
 import org.protege.editor.owl.server.http.ServerProperties;
 import org.protege.editor.owl.server.http.messages.History;
 import org.protege.editor.owl.server.http.messages.HttpAuthResponse;
 import org.protege.editor.owl.server.http.messages.LoginCreds;
 import org.protege.editor.owl.server.util.SnapShot;
+import org.protege.editor.owl.server.versioning.ChangeHistoryUtils;
 import org.protege.editor.owl.server.versioning.VersionedOWLOntologyImpl;
 import org.protege.editor.owl.server.versioning.api.*;
 import org.protege.editor.owl.ui.util.ProgressDialog;
-import org.semanticweb.binaryowl.BinaryOWLOntologyDocumentSerializer;
-import org.semanticweb.binaryowl.owlapi.BinaryOWLOntologyBuildingHandler;
-import org.semanticweb.binaryowl.owlapi.OWLOntologyWrapper;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 import org.slf4j.Logger;
@@ -51,11 +62,23 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.ZipInputStream;
 
 import static org.protege.editor.owl.server.http.ServerEndpoints.*;
@@ -69,15 +92,72 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 
 	private static final MediaType JsonContentType = MediaType.parse("application/json; charset=utf-8");
 	private static final MediaType ApplicationContentType = MediaType.parse("application");
+	private static final MediaType BinaryOwlContentType = MediaType.parse("application/x-binaryowl");
 
 	private static final String authHeader = "Authorization";
 
+	private static final String acceptEncodingHeader = "Accept-Encoding";
+	private static final String contentEncodingHeader = "Content-Encoding";
+	private static final String gzipEncoding = "gzip";
+
 	private static final String SNAPSHOT_CHECKSUM = "-checksum";
+	private static final String SNAPSHOT_CHECKSUM_ALGORITHM = "MD5";
+
+	/*
+	 * Long-poll endpoint that answers once the project head moves past the given revision
+	 */
+	private static final String HEAD_WATCH = HEAD + "/watch";
+
+	private static final String HISTORY_METADATA = LATEST_CHANGES + "/metadata";
+	private static final String HISTORY_REVISIONS = LATEST_CHANGES + "/range";
+
+	/*
+	 * Endpoints of a multi-part commit: a commit session is opened, receives the changes in
+	 * numbered chunks and is then turned into a single revision by the server
+	 */
+	private static final String COMMIT_BEGIN = COMMIT + "/begin";
+	private static final String COMMIT_CHUNK = COMMIT + "/chunk";
+	private static final String COMMIT_STATUS = COMMIT + "/status";
+	private static final String COMMIT_FINISH = COMMIT + "/finish";
+
+	private static final int COMMIT_CHUNK_SIZE = 50000; // in changes
+
+	private static final int MAX_CHUNK_RETRIES = 5;
 
 	private final String serverAddress;
 
 	private final OkHttpClient httpClient;
 
+	/*
+	 * Set once the server advertises (RFC 7694) that it accepts gzip-encoded request bodies
+	 */
+	private volatile boolean serverAcceptsGzip = false;
+
+	/*
+	 * Cleared once the server turns out not to offer the head watch endpoint
+	 */
+	private volatile boolean headWatchSupported = true;
+
+	private volatile boolean historyPagingSupported = true;
+
+	/*
+	 * Cleared once the server turns out not to accept multi-part commits
+	 */
+	private volatile boolean chunkedCommitSupported = true;
+
+	/*
+	 * Guards the local files of each project, i.e., the snapshot and the revision cache, against
+	 * an open and a prefetch of the project writing them at the same time
+	 */
+	private final ConcurrentMap<ProjectId, ReentrantLock> projectLocks = new ConcurrentHashMap<>();
+
+	/*
+	 * The prefetches in progress, so that opening a project can cancel the prefetch of it
+	 */
+	private final ConcurrentMap<ProjectId, OperationHandle> prefetches = new ConcurrentHashMap<>();
+
+	private final AtomicInteger opensInProgress = new AtomicInteger();
+
 	private UserId userId;
 	private UserInfo userInfo;
 	
@@ -100,10 +180,7 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 	 */
 	public LocalHttpClient(String username, String password, String serverAddress, boolean admin)
 		throws LoginTimeoutException, AuthorizationException, ClientRequestException {
-		httpClient = new OkHttpClient.Builder()
-				.writeTimeout(1800, TimeUnit.SECONDS)
-				.readTimeout(1800, TimeUnit.SECONDS)
-				.build();
+		httpClient = newHttpClient();
 		// Not all callers are careful enough to pass the protocol here. So we add a default (safe) one
 		URI serverUri = URI.create(serverAddress);
 		if (Strings.isNullOrEmpty(serverUri.getScheme())) {
@@ -116,6 +193,25 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		LocalHttpClient.currentHttpClient = this;
 	}
 
+	/*
+	 * Creates a client on the given HTTP client for a user who is logged in already, without
+	 * the server configuration, e.g., to talk to a test server.
+	 */
+	LocalHttpClient(OkHttpClient httpClient, String serverAddress, UserInfo userInfo) {
+		this.httpClient = httpClient;
+		this.serverAddress = serverAddress;
+		this.userInfo = userInfo;
+		userId = ConfigurationManager.getFactory().getUserId(userInfo.getId());
+	}
+
+	private static OkHttpClient newHttpClient() {
+		return new OkHttpClient.Builder()
+				.writeTimeout(1800, TimeUnit.SECONDS)
+				.readTimeout(1800, TimeUnit.SECONDS)
+				.addNetworkInterceptor(new ProgressInterceptor())
+				.build();
+	}
+
 	public static LocalHttpClient current_user() {
 		return currentHttpClient;
 	}
@@ -203,24 +299,17 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 
 	private ServerDocument postProjectToServer(Project project) throws IOException,
 		LoginTimeoutException, AuthorizationException, ClientRequestException {
-		ByteArrayOutputStream b = writeRequestArgumentsIntoByteStream(project);
 		Response response = post(PROJECT,
-			RequestBody.create(ApplicationContentType, b.toByteArray()),
+			new ObjectStreamRequestBody(ApplicationContentType,
+				project.getId(),
+				project.getName(),
+				project.getDescription(),
+				project.getOwner(),
+				project.getOptions().orNull()),
 			true); // send the request to server
 		return retrieveServerDocumentFromServerResponse(response);
 	}
 
-	private ByteArrayOutputStream writeRequestArgumentsIntoByteStream(Project proj) throws IOException {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		ObjectOutputStream os = new ObjectOutputStream(b);
-		os.writeObject(proj.getId());
-		os.writeObject(proj.getName());
-		os.writeObject(proj.getDescription());
-		os.writeObject(proj.getOwner());
-		os.writeObject(proj.getOptions().orNull());
-		return b;
-	}
-
 	private ServerDocument retrieveServerDocumentFromServerResponse(Response response)
 		throws ClientRequestException {
 		try {
@@ -262,16 +351,124 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 	public ChangeHistory commit(@Nonnull ProjectId projectId, CommitBundle commitBundle)
 		throws AuthorizationException, ClientRequestException {
 		checkSnapshotChecksumPresent(projectId);
+		setStage("Sending commit");
+		if (commitBundle.getCommit().getChanges().size() > COMMIT_CHUNK_SIZE && chunkedCommitSupported) {
+			Optional<ChangeHistory> acceptedChanges = commitInChunks(projectId, commitBundle);
+			if (acceptedChanges.isPresent()) {
+				return acceptedChanges.get();
+			}
+		}
+		Response response = postWithProjectId(COMMIT,
+			new ObjectStreamRequestBody(ApplicationContentType, commitBundle).whenWritten(LocalHttpClient::disableCancel),
+			projectId,
+			true); // send request to server
+		return retrieveChangeHistoryFromServerResponse(response);
+	}
+
+	/*
+	 * Sends an oversized commit in ordered chunks of changes within a commit session. The server
+	 * only makes a revision out of the session when it is finished, so the commit stays atomic.
+	 * A chunk that fails to go through is sent again, starting from the first chunk the server
+	 * is missing. Nothing is returned if the server does not support multi-part commits.
+	 */
+	private Optional<ChangeHistory> commitInChunks(@Nonnull ProjectId projectId, CommitBundle commitBundle)
+		throws AuthorizationException, ClientRequestException {
+		List<OWLOntologyChange> changes = commitBundle.getCommit().getChanges();
+		int chunkCount = (changes.size() + COMMIT_CHUNK_SIZE - 1) / COMMIT_CHUNK_SIZE;
+		RequestBody beginBody = new ObjectStreamRequestBody(ApplicationContentType,
+			commitBundle.getBaseRevision(), commitBundle.getCommit().getMetadata(), chunkCount);
+		Response response = executeProjectRequest(projectPostBuilder(COMMIT_BEGIN, beginBody, projectId), beginBody);
+		if (response.code() == StatusCodes.NOT_FOUND || response.code() == StatusCodes.METHOD_NOT_ALLOWED
+				|| response.code() == StatusCodes.NOT_IMPLEMENTED) {
+			logger.info("Server does not support multi-part commits, sending the commit in one request");
+			chunkedCommitSupported = false;
+			response.body().close();
+			return Optional.empty();
+		}
+		if (!response.isSuccessful()) {
+			response.body().close();
+			throwRequestExceptions(response);
+		}
+		String sessionId = retrieveObjectFromServerResponse(response, String.class);
+		logger.info(String.format("Sending commit of %d changes in %d chunks (session %s)", changes.size(),
+			chunkCount, sessionId));
+
+		int chunk = 0;
+		int failures = 0;
+		while (chunk < chunkCount) {
+			setStage(String.format("Sending commit (part %d of %d)", chunk + 1, chunkCount));
+			try {
+				List<OWLOntologyChange> chunkChanges = new ArrayList<>(changes.subList(chunk * COMMIT_CHUNK_SIZE,
+					Math.min(changes.size(), (chunk + 1) * COMMIT_CHUNK_SIZE)));
+				sendCommitChunk(projectId, sessionId, chunk, chunkChanges);
+				chunk++;
+				failures = 0;
+			} catch (IOException e) {
+				OperationHandle.current().ifPresent(OperationHandle::checkCancelled); // aborted, not failed
+				if (++failures > MAX_CHUNK_RETRIES) {
+					logger.error(e.getMessage(), e);
+					throw new ClientRequestException("Unable to send commit to server (see error log for details)", e);
+				}
+				logger.warn(String.format("Sending chunk %d of commit session %s failed, resuming", chunk, sessionId), e);
+				try {
+					Thread.sleep(1000L << failures);
+					chunk = getNextCommitChunk(projectId, sessionId);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new ClientRequestException("Commit was interrupted", ie);
+				} catch (IOException ignored) {
+					// the server is still out of reach, the chunk is sent again on the next attempt
+				}
+			}
+		}
+
+		RequestBody finishBody = new ObjectStreamRequestBody(ApplicationContentType, sessionId)
+			.whenWritten(LocalHttpClient::disableCancel);
+		response = executeProjectRequest(projectPostBuilder(COMMIT_FINISH, finishBody, projectId), finishBody);
+		if (!response.isSuccessful()) {
+			response.body().close();
+			throwRequestExceptions(response);
+		}
+		return Optional.of(retrieveChangeHistoryFromServerResponse(response));
+	}
+
+	private void sendCommitChunk(@Nonnull ProjectId projectId, String sessionId, int chunk,
+			List<OWLOntologyChange> chunkChanges) throws IOException, AuthorizationException, ClientRequestException {
+		RequestBody body = new ObjectStreamRequestBody(ApplicationContentType, chunkChanges);
+		String url = COMMIT_CHUNK + "?session=" + sessionId + "&index=" + chunk;
+		Response response = execute(projectPostBuilder(url, body, projectId), body);
 		try {
-			ByteArrayOutputStream b = writeRequestArgumentsIntoByteStream(commitBundle);
-			Response response = postWithProjectId(COMMIT,
-				RequestBody.create(ApplicationContentType, b.toByteArray()),
-				projectId,
-					true); // send request to server
-			return retrieveChangeHistoryFromServerResponse(response);
-		} catch (IOException e) {
+			if (!response.isSuccessful()) {
+				throwRequestExceptions(response);
+			}
+		} finally {
+			response.body().close();
+		}
+	}
+
+	/*
+	 * Asks the server which chunk of the commit session it expects next.
+	 */
+	private int getNextCommitChunk(@Nonnull ProjectId projectId, String sessionId)
+			throws IOException, AuthorizationException, ClientRequestException {
+		RequestBody body = new ObjectStreamRequestBody(ApplicationContentType, sessionId);
+		Response response = execute(projectPostBuilder(COMMIT_STATUS, body, projectId), body);
+		if (!response.isSuccessful()) {
+			response.body().close();
+			throwRequestExceptions(response);
+		}
+		return retrieveObjectFromServerResponse(response, Integer.class);
+	}
+
+	private <T> T retrieveObjectFromServerResponse(Response response, Class<T> type) throws ClientRequestException {
+		try {
+			ObjectInputStream ois = new ObjectInputStream(response.body().byteStream());
+			return type.cast(ois.readObject());
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
 			logger.error(e.getMessage(), e);
-			throw new ClientRequestException("Unable to send request to server (see error log for details)", e);
+			throw new ClientRequestException("Failed to read data from server (see error log for details)", e);
+		} finally {
+			response.body().close();
 		}
 	}
 
@@ -299,14 +496,6 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		}
 	}
 
-	private ByteArrayOutputStream writeRequestArgumentsIntoByteStream(
-			CommitBundle commitBundle) throws IOException {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		ObjectOutputStream os = new ObjectOutputStream(b);
-		os.writeObject(commitBundle);
-		return b;
-	}
-	
 	private List<History> retrieveEVSHistoryFromServerResponse(Response response)
 		throws ClientRequestException {
 			try {
@@ -382,17 +571,417 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 	public VersionedOWLOntology buildVersionedOntology(ServerDocument sdoc, OWLOntologyManager owlManager,
 													   @Nonnull ProjectId pid)
 			throws LoginTimeoutException, AuthorizationException, ClientRequestException {
+		return buildVersionedOntology(sdoc, owlManager, pid, Optional.empty());
+	}
+
+	/**
+	 * Builds the versioned ontology of the project from the local head checkpoint or the local
+	 * snapshot, and the change history. The snapshot is downloaded first if there is none or if
+	 * it does not match the checksum of the server snapshot, when that is known.
+	 *
+	 * The stages overlap: the change history is downloaded, or topped up from the revision
+	 * cache, and decoded on the bulk lane of the client scheduler while the snapshot is
+	 * downloaded and loaded on the calling thread. Opening takes about as long as the slower of
+	 * the two, rather than both.
+	 *
+	 * When there is a head checkpoint, the {@link SyncPlanner} decides whether to start from it
+	 * or to replay the history up to it on top of the snapshot.
+	 */
+	public VersionedOWLOntology buildVersionedOntology(ServerDocument sdoc, OWLOntologyManager owlManager,
+			@Nonnull ProjectId pid, Optional<String> serverChecksum)
+			throws LoginTimeoutException, AuthorizationException, ClientRequestException {
+		return buildVersionedOntology(sdoc, owlManager, pid, serverChecksum, false).versionedOntology;
+	}
+
+	/**
+	 * Builds the versioned ontology of the project like
+	 * {@link #buildVersionedOntology(ServerDocument, OWLOntologyManager, ProjectId, Optional)}, but
+	 * stops applying the change history once the checkpoint or snapshot is loaded. The versioned
+	 * ontology returned is at the revision it was loaded at, or the one after when that is the base
+	 * revision, and the revisions still to be applied to reach the server head are returned with
+	 * it, e.g., for a {@link HistoryCatchUp}.
+	 */
+	public EarlyOpenResult buildVersionedOntologyEarly(ServerDocument sdoc, OWLOntologyManager owlManager,
+			@Nonnull ProjectId pid, Optional<String> serverChecksum)
+			throws LoginTimeoutException, AuthorizationException, ClientRequestException {
+		return buildVersionedOntology(sdoc, owlManager, pid, serverChecksum, true);
+	}
+
+	/*
+	 * Opens the project with its local files to itself: a prefetch of the project in progress is
+	 * cancelled, and no other one starts until the project is opened.
+	 */
+	private EarlyOpenResult buildVersionedOntology(ServerDocument sdoc, OWLOntologyManager owlManager,
+			@Nonnull ProjectId pid, Optional<String> serverChecksum, boolean early)
+			throws LoginTimeoutException, AuthorizationException, ClientRequestException {
 		if (pid == null) throw new IllegalArgumentException("projectId is null");
+		opensInProgress.incrementAndGet();
+		try {
+			OperationHandle prefetch = prefetches.get(pid);
+			if (prefetch != null) {
+				logger.info("Opening " + pid + ", cancelling its prefetch");
+				prefetch.cancel();
+			}
+			Lock lock = lockProject(pid);
+			try {
+				return buildVersionedOntologyLocked(sdoc, owlManager, pid, serverChecksum, early);
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			opensInProgress.decrementAndGet();
+		}
+	}
+
+	private EarlyOpenResult buildVersionedOntologyLocked(ServerDocument sdoc, OWLOntologyManager owlManager,
+			@Nonnull ProjectId pid, Optional<String> serverChecksum, boolean early)
+			throws LoginTimeoutException, AuthorizationException, ClientRequestException {
 		setCurrentProject(pid);
-		if (!getSnapShotFile(pid).get().exists()) {
-			SnapShot snapshot = getSnapShot(pid);
-			createLocalSnapShot(snapshot.getOntology(), pid);
+		Optional<String> localChecksum = getSnapshotChecksum(pid);
+		if (!serverChecksum.isPresent() && (!localChecksum.isPresent() || !getSnapShotFile(pid).get().exists())) {
+			// the history can only be asked for once the checksum of the snapshot is known
+			downloadSnapShot(pid);
+			localChecksum = getSnapshotChecksum(pid);
+		}
+		String checksum = serverChecksum.isPresent() ? serverChecksum.get() : localChecksum.get();
+		boolean snapshotStale = !getSnapShotFile(pid).get().exists() || !checksum.equals(localChecksum.orElse(null));
+
+		Future<ChangeHistory> historyTask = submitInOperation(Lane.BULK, () -> getChangeHistory(sdoc, pid, checksum));
+		OWLOntology targetOntology = null;
+		try {
+			if (snapshotStale) {
+				// the history of the server is on top of its snapshot, it cannot be replayed on any other
+				logger.info("Snapshot of " + pid + " is missing or stale, downloading it");
+				downloadSnapShot(pid);
+			}
+			HeadCheckpoint checkpoint = new HeadCheckpoint(pid);
+			Optional<DocumentRevision> checkpointRevision = checkpoint.getRevision(checksum);
+			Optional<SyncPlanner.Decision> plan = Optional.empty();
+			if (checkpointRevision.isPresent()) {
+				plan = Optional.of(SyncPlanner.getInstance().planOpen(pid, checkpoint.getBaseRevision(),
+					checkpointRevision.get(), checkpoint.getSize(), getSnapShotFile(pid).get().length()));
+				if (!plan.get().isReplay()) {
+					targetOntology = loadCheckpoint(checkpoint, owlManager, pid).orElse(null);
+				}
+			}
+			if (targetOntology == null) {
+				checkpointRevision = Optional.empty();
+				targetOntology = loadSnapShot(owlManager, pid);
+			}
+			ChangeHistory remoteChangeHistory = getResult(historyTask);
+			SyncPlanner.getInstance().observe(remoteChangeHistory);
+			DocumentRevision start = remoteChangeHistory.getBaseRevision();
+			if (checkpointRevision.isPresent()) {
+				if (isWithin(checkpointRevision.get(), remoteChangeHistory)) {
+					start = checkpointRevision.get();
+					ClientUtils.loadMissingImports(targetOntology, owlManager);
+				}
+				else {
+					logger.warn("Checkpoint of " + pid + " at " + checkpointRevision.get()
+						+ " is outside of the server history, discarding it");
+					checkpoint.clear();
+					owlManager.removeOntology(targetOntology);
+					targetOntology = null; // not to be removed again if loading the snapshot fails
+					targetOntology = loadSnapShot(owlManager, pid);
+				}
+			}
+			DocumentRevision base = remoteChangeHistory.getBaseRevision();
+			int offset = DocumentRevision.distance(start, remoteChangeHistory.getHeadRevision());
+			// an early open still applies the first revision after the base, as the history of the
+			// versioned ontology is cropped from the base up to the revision it is opened at
+			int applied = early ? Math.min(offset, start.sameAs(base) ? 1 : 0) : offset;
+			logger.info(String.format("Loaded ontology at %s, now applying %d of %d newer revision(s)", start,
+				applied, offset));
+			setStage("Applying history");
+			if (applied > 0) {
+				ClientUtils.updateOntology(targetOntology, start.sameAs(base) && applied == offset
+					? remoteChangeHistory
+					: ChangeHistoryUtils.crop(remoteChangeHistory, start, applied), owlManager);
+			}
+			plan.ifPresent(SyncPlanner.Decision::finished);
+			if (applied == offset) {
+				return new EarlyOpenResult(new VersionedOWLOntologyImpl(sdoc, targetOntology, remoteChangeHistory),
+					null);
+			}
+			DocumentRevision opened = start.next(applied);
+			return new EarlyOpenResult(new VersionedOWLOntologyImpl(sdoc, targetOntology,
+				ChangeHistoryUtils.crop(remoteChangeHistory, base, DocumentRevision.distance(base, opened))),
+				ChangeHistoryUtils.crop(remoteChangeHistory, opened, offset - applied));
+		} catch (Exception e) {
+			historyTask.cancel(true);
+			if (targetOntology != null) {
+				owlManager.removeOntology(targetOntology); // cancelled or failed half-way
+			}
+			throw e;
+		}
+	}
+
+	private static boolean isWithin(DocumentRevision revision, ChangeHistory changeHistory) {
+		return DocumentRevision.distance(changeHistory.getBaseRevision(), revision) >= 0
+			&& DocumentRevision.distance(revision, changeHistory.getHeadRevision()) >= 0;
+	}
+
+	/*
+	 * Loads the local head checkpoint of the project. Nothing is loaded, and the checkpoint is
+	 * discarded, when it cannot be read.
+	 */
+	private Optional<OWLOntology> loadCheckpoint(HeadCheckpoint checkpoint, OWLOntologyManager owlManager,
+			@Nonnull ProjectId pid) {
+		setStage("Loading checkpoint");
+		try {
+			return Optional.of(checkpoint.load(owlManager));
+		} catch (IOException | OWLOntologyCreationException e) {
+			logger.warn("Unable to load checkpoint of " + pid + ", discarding it", e);
+			checkpoint.clear();
+			return Optional.empty();
+		}
+	}
+
+	/*
+	 * Runs the task on the given lane of the client scheduler, on behalf of the operation the
+	 * calling thread works on, if any.
+	 */
+	private static <T> Future<T> submitInOperation(Lane lane, Callable<T> task) {
+		Optional<OperationHandle> handle = OperationHandle.current();
+		return ClientScheduler.getInstance().submit(lane, () -> {
+			if (!handle.isPresent()) {
+				return task.call();
+			}
+			try (OperationHandle.Scope scope = handle.get().attach()) {
+				return task.call();
+			}
+		});
+	}
+
+	private static <T> T getResult(Future<T> task) throws AuthorizationException, ClientRequestException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientRequestException("Interrupted while waiting for the server", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof AuthorizationException) {
+				throw (AuthorizationException) cause;
+			} else if (cause instanceof ClientRequestException) {
+				throw (ClientRequestException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			logger.error(cause.getMessage(), cause);
+			throw new ClientRequestException("Unexpected error (see error log for details)", cause);
+		}
+	}
+
+	/**
+	 * Checks whether the local checkpoint of the project is at the given revision already.
+	 */
+	public boolean hasCheckpoint(@Nonnull ProjectId pid, DocumentRevision revision) {
+		if (pid == null) throw new IllegalArgumentException("projectId is null");
+		Optional<String> snapshotChecksum = getSnapshotChecksum(pid);
+		return snapshotChecksum.isPresent() && new HeadCheckpoint(pid).getRevision(snapshotChecksum.get())
+			.map(r -> r.sameAs(revision)).orElse(false);
+	}
+
+	/**
+	 * Writes a local checkpoint of a project ontology at the given revision, reached from the
+	 * snapshot at the base revision of the history, so that the next time
+	 * the project is opened only the revisions committed after it need to be applied. The contents
+	 * are copied from the ontology beforehand, on the thread it is edited and updated on, so that
+	 * they match the revision; they are written out on the calling thread. The caller is also
+	 * responsible for making sure that the ontology has no uncommitted changes, as they would
+	 * otherwise end up in the checkpoint.
+	 */
+	void writeCheckpoint(@Nonnull ProjectId pid, DocumentRevision baseRevision, DocumentRevision revision,
+			SegmentedSnapShot.Contents contents) {
+		if (pid == null) throw new IllegalArgumentException("projectId is null");
+		Optional<String> snapshotChecksum = getSnapshotChecksum(pid);
+		if (!snapshotChecksum.isPresent()) {
+			return;
+		}
+		HeadCheckpoint checkpoint = new HeadCheckpoint(pid);
+		try {
+			checkpoint.write(contents, baseRevision, revision, snapshotChecksum.get());
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Unable to write checkpoint of " + pid, e);
+			checkpoint.clear();
+		}
+	}
+
+	/**
+	 * Gets the changes that the search index of the project has not seen yet, i.e., those of
+	 * the revisions after the one the index was last brought up to. All the changes of the
+	 * history are returned when that revision is not known or not part of the history.
+	 */
+	public List<OWLOntologyChange> getUnindexedChanges(VersionedOWLOntology vont, @Nonnull ProjectId pid) {
+		if (pid == null) throw new IllegalArgumentException("projectId is null");
+		ChangeHistory unindexedHistory = vont.getChangeHistory();
+		Optional<String> snapshotChecksum = getSnapshotChecksum(pid);
+		if (snapshotChecksum.isPresent()) {
+			Optional<DocumentRevision> indexedRevision = new SearchIndexTag(pid).getRevision(snapshotChecksum.get());
+			if (indexedRevision.isPresent() && isWithin(indexedRevision.get(), unindexedHistory)) {
+				int offset = DocumentRevision.distance(indexedRevision.get(), unindexedHistory.getHeadRevision());
+				logger.info(String.format("Search index of %s is at %s, %d newer revision(s) to index", pid,
+					indexedRevision.get(), offset));
+				if (offset == 0) {
+					return new ArrayList<>();
+				}
+				unindexedHistory = ChangeHistoryUtils.crop(unindexedHistory, indexedRevision.get(), offset);
+			}
+		}
+		List<OWLOntologyChange> changes = new ArrayList<>();
+		for (List<OWLOntologyChange> revisionChanges : unindexedHistory.getRevisions().values()) {
+			changes.addAll(revisionChanges);
+		}
+		return changes;
+	}
+
+	/**
+	 * Records that the search index of the project covers the revisions up to the given one.
+	 */
+	public void recordIndexedRevision(@Nonnull ProjectId pid, DocumentRevision revision) {
+		if (pid == null) throw new IllegalArgumentException("projectId is null");
+		Optional<String> snapshotChecksum = getSnapshotChecksum(pid);
+		if (snapshotChecksum.isPresent()) {
+			new SearchIndexTag(pid).write(revision, snapshotChecksum.get());
+		}
+	}
+
+	/**
+	 * Records that the search index of the project now also covers the revisions after
+	 * <code>from</code> up to <code>to</code>. Nothing is recorded unless the index was known to
+	 * cover the revisions up to <code>from</code>, as there would otherwise be a gap.
+	 */
+	public void recordIndexedRevision(@Nonnull ProjectId pid, DocumentRevision from, DocumentRevision to) {
+		if (pid == null) throw new IllegalArgumentException("projectId is null");
+		Optional<String> snapshotChecksum = getSnapshotChecksum(pid);
+		if (!snapshotChecksum.isPresent()) {
+			return;
+		}
+		SearchIndexTag tag = new SearchIndexTag(pid);
+		if (tag.getRevision(snapshotChecksum.get()).map(r -> r.sameAs(from)).orElse(false)) {
+			tag.write(to, snapshotChecksum.get());
 		}
-		OWLOntology targetOntology = loadSnapShot(owlManager, pid);
-		ChangeHistory remoteChangeHistory = getLatestChanges(sdoc, DocumentRevision.START_REVISION, pid);
-		logger.info("Loaded ontology, now updating from server");
-		ClientUtils.updateOntology(targetOntology, remoteChangeHistory, owlManager);
-		return new VersionedOWLOntologyImpl(sdoc, targetOntology, remoteChangeHistory);
+	}
+
+	/**
+	 * Brings the local copy of the project up to date with the server without opening it, so
+	 * that opening it later finds everything but the latest revisions on disk: the snapshot is
+	 * downloaded if it is missing or stale and the revision cache is topped up to the server
+	 * head. Opening the project cancels its prefetch; while a project is being opened, nothing
+	 * is prefetched and false is returned.
+	 */
+	public boolean prefetchProject(@Nonnull ProjectId pid) throws LoginTimeoutException, AuthorizationException,
+		ClientRequestException {
+		if (pid == null) throw new IllegalArgumentException("projectId is null");
+		Optional<OperationHandle> handle = OperationHandle.current();
+		handle.ifPresent(h -> prefetches.put(pid, h));
+		try {
+			if (isOpening()) {
+				// registered too late to be cancelled by the open, which has the project to itself
+				return false;
+			}
+			Lock lock = lockProject(pid);
+			try {
+				prefetchProjectLocked(pid);
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			handle.ifPresent(h -> prefetches.remove(pid, h));
+		}
+	}
+
+	/**
+	 * Checks whether a project is being opened, e.g., for background transfers to make way for it.
+	 */
+	public boolean isOpening() {
+		return opensInProgress.get() > 0;
+	}
+
+	private Lock lockProject(@Nonnull ProjectId pid) throws ClientRequestException {
+		Lock lock = projectLocks.computeIfAbsent(pid, id -> new ReentrantLock());
+		try {
+			lock.lockInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientRequestException("Interrupted while waiting for the local files of " + pid, e);
+		}
+		return lock;
+	}
+
+	private void prefetchProjectLocked(@Nonnull ProjectId pid) throws LoginTimeoutException, AuthorizationException,
+		ClientRequestException {
+		setCurrentProject(pid);
+		OpenProjectResult openProjectResult = openProject(pid);
+		Optional<String> serverChecksum = openProjectResult.snapshotChecksum;
+		Optional<String> localChecksum = getSnapshotChecksum(pid);
+		if (!localChecksum.isPresent() || !getSnapShotFile(pid).get().exists()
+			|| (serverChecksum.isPresent() && !serverChecksum.equals(localChecksum))) {
+			downloadSnapShot(pid);
+			localChecksum = getSnapshotChecksum(pid);
+		}
+		OperationHandle.current().ifPresent(OperationHandle::checkCancelled);
+		Optional<String> checksum = serverChecksum.isPresent() ? serverChecksum : localChecksum;
+		if (!checksum.isPresent()) {
+			logger.warn("Snapshot checksum of " + pid + " is unknown, not prefetching its history");
+			return;
+		}
+		getChangeHistory(openProjectResult.serverDocument, pid, checksum.get());
+	}
+
+	/*
+	 * Gets the full change history on top of the local snapshot. Revisions that are already
+	 * in the local revision cache are not downloaded again, only the ones committed after the
+	 * cached head revision are. The cache is discarded when the server head is behind it.
+	 */
+	private ChangeHistory getChangeHistory(ServerDocument sdoc, @Nonnull ProjectId pid, String snapshotChecksum)
+			throws AuthorizationException, ClientRequestException {
+		setStage("Downloading history");
+		RevisionCache revisionCache = new RevisionCache(pid);
+		ChangeHistory changeHistory = null;
+		Optional<ChangeHistory> cachedHistory = revisionCache.load(snapshotChecksum);
+		if (cachedHistory.isPresent()) {
+			DocumentRevision cachedHead = cachedHistory.get().getHeadRevision();
+			ChangeHistory newChanges = getLatestChanges(sdoc, cachedHead, pid, snapshotChecksum);
+			if (newChanges.getRevisions().isEmpty()
+				&& DocumentRevision.distance(getRemoteHeadRevision(sdoc, pid), cachedHead) > 0) {
+				// the server history was set back, e.g., restored from a backup
+				logger.warn("Revision cache of " + pid + " is ahead of the server history, discarding it");
+				revisionCache.clear();
+			}
+			else if (newChanges.getBaseRevision().sameAs(cachedHead)) {
+				logger.info(String.format("Revision cache of %s is at %s, fetched %d newer revision(s)", pid, cachedHead,
+						DocumentRevision.distance(cachedHead, newChanges.getHeadRevision())));
+				changeHistory = cachedHistory.get();
+				ClientUtils.appendChangeHistory(changeHistory, newChanges);
+			}
+			else {
+				logger.warn("Revision cache of " + pid + " does not line up with the server history, discarding it");
+			}
+		}
+		if (changeHistory == null) {
+			changeHistory = getLatestChanges(sdoc, DocumentRevision.START_REVISION, pid, snapshotChecksum);
+		}
+		revisionCache.save(changeHistory, snapshotChecksum);
+		return changeHistory;
+	}
+
+	/*
+	 * Gets the revisions after the given one, on top of the server snapshot with the given
+	 * checksum, which need not be the one of the local snapshot (yet).
+	 */
+	private ChangeHistory getLatestChanges(ServerDocument sdoc, DocumentRevision start, @Nonnull ProjectId projectId,
+			String snapshotChecksum) throws AuthorizationException, ClientRequestException {
+		RequestBody body = new ObjectStreamRequestBody(ApplicationContentType, sdoc.getHistoryFile(), start);
+		Response response = executeProjectRequest(
+			projectPostBuilder(LATEST_CHANGES, body, projectId, snapshotChecksum), body);
+		if (!response.isSuccessful()) {
+			response.body().close();
+			throwRequestExceptions(response);
+		}
+		return retrieveChangeHistoryFromServerResponse(response);
 	}
 
 	private void setCurrentProject(@Nonnull ProjectId pid) throws ClientRequestException {
@@ -406,6 +995,14 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 	}
 
 	private static Optional<File> getSnapShotFile(@Nonnull ProjectId projectId) {
+		return getProjectFile(projectId, "history-snapshot");
+	}
+
+	/*
+	 * Gets a file in the local directory of the given project, where the snapshot and the other
+	 * client-side project data are kept.
+	 */
+	static Optional<File> getProjectFile(@Nonnull ProjectId projectId, String fileName) {
 		if (projectId == null) throw new IllegalArgumentException("projectId is null");
 		try {
 			Files.createDirectories(Paths.get(projectId.get()));
@@ -413,7 +1010,7 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 			logger.error("Unable to create snapshot directory for " + projectId + ": " + e);
 			return Optional.empty();
 		}
-		return Optional.of(new File(projectId.get() + File.separator + "history-snapshot"));
+		return Optional.of(new File(projectId.get() + File.separator + fileName));
 	}
 
 	public Optional<String> getSnapshotChecksum(@Nonnull ProjectId projectId) {
@@ -428,11 +1025,14 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 
 	public OWLOntology loadSnapShot(OWLOntologyManager manIn, @Nonnull ProjectId pid) throws ClientRequestException {
 		if (pid == null) throw new IllegalArgumentException("projectId is null");
+		setStage("Loading snapshot");
 		try {
-			BinaryOWLOntologyDocumentSerializer serializer = new BinaryOWLOntologyDocumentSerializer();
-			OWLOntology ontIn = manIn.createOntology();
-			BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(getSnapShotFile(pid).get()));
-			serializer.read(inputStream, new BinaryOWLOntologyBuildingHandler(ontIn), manIn.getOWLDataFactory());
+			File snapshotFile = getSnapShotFile(pid).get();
+			boolean segmented = SegmentedSnapShot.isSegmented(snapshotFile);
+			OWLOntology ontIn = readBinaryOntology(manIn, snapshotFile);
+			if (!segmented) {
+				resegmentSnapShot(pid, SegmentedSnapShot.Contents.of(ontIn), snapshotFile);
+			}
 			return ontIn;
 		} catch (IOException | OWLOntologyCreationException e) {
 			logger.error(e.getMessage(), e);
@@ -440,6 +1040,43 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		}
 	}
 
+	/*
+	 * Rewrites a snapshot received in the plain binary layout in the segmented one, so that it
+	 * can be loaded in parallel from then on. This is done in the background, off the open, from
+	 * a copy of the snapshot contents taken before any history is applied. The snapshot stays
+	 * usable if this fails, and is not replaced if a new one was downloaded in the meantime.
+	 */
+	private void resegmentSnapShot(ProjectId pid, SegmentedSnapShot.Contents contents, File snapshotFile) {
+		Optional<String> checksum = getSnapshotChecksum(pid);
+		ClientScheduler.getInstance().submit(Lane.BACKGROUND, () -> {
+			File tempFile = new File(snapshotFile.getAbsolutePath() + ".segmented.tmp");
+			try {
+				writeBinaryOntology(contents, tempFile);
+				if (checksum.equals(getSnapshotChecksum(pid))) {
+					Files.move(tempFile.toPath(), snapshotFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+			} catch (IOException e) {
+				logger.warn("Unable to rewrite the snapshot in the segmented layout", e);
+			} finally {
+				tempFile.delete();
+			}
+		});
+	}
+
+	static OWLOntology readBinaryOntology(OWLOntologyManager manIn, File file)
+			throws IOException, OWLOntologyCreationException {
+		return SegmentedSnapShot.read(manIn, file);
+	}
+
+	static void writeBinaryOntology(OWLOntology ont, File file) throws IOException {
+		SegmentedSnapShot.write(ont, file);
+	}
+
+	static void writeBinaryOntology(SegmentedSnapShot.Contents contents, File file) throws IOException {
+		SegmentedSnapShot.write(contents, file);
+	}
+
 	private void postProjectSnapShotToServer(Project project, File font) throws LoginTimeoutException,
 		AuthorizationException, ClientRequestException {
 		Response response = null;
@@ -451,10 +1088,8 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 			} else {
 				ont = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(font);
 			}
-			ByteArrayOutputStream b = writeRequestArgumentsIntoByteStream(project.getId(), new SnapShot(ont));
-
 			response = post(PROJECT_SNAPSHOT,
-				RequestBody.create(ApplicationContentType, b.toByteArray()),
+				new ObjectStreamRequestBody(ApplicationContentType, project.getId(), new SnapShot(ont)),
 				true); // send request to server
 
 			ObjectInputStream ois = new ObjectInputStream(response.body().byteStream());
@@ -470,33 +1105,13 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		}
 	}
 
-	private ByteArrayOutputStream writeRequestArgumentsIntoByteStream(ProjectId projectId, SnapShot ontologySnapshot)
-		throws IOException {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		ObjectOutputStream os = new ObjectOutputStream(b);
-		os.writeObject(projectId);
-		os.writeObject(ontologySnapshot);
-		return b;
-	}
-
 	public void createLocalSnapShot(OWLOntology ont, @Nonnull ProjectId projectId) throws ClientRequestException {
 		if (projectId == null) throw new IllegalArgumentException("projectId is null");
-		BufferedOutputStream outputStream = null;
 		try {
-			BinaryOWLOntologyDocumentSerializer serializer = new BinaryOWLOntologyDocumentSerializer();
-			outputStream = new BufferedOutputStream(new FileOutputStream(getSnapShotFile(projectId).get()));
-			serializer.write(new OWLOntologyWrapper(ont), new DataOutputStream(outputStream));
+			writeBinaryOntology(ont, getSnapShotFile(projectId).get());
 		} catch (IOException e) {
 			logger.error(e.getMessage(), e);
 			throw new ClientRequestException("Failed to create local snapshot (see error log for details)", e);
-		} finally {
-			try {
-				if (outputStream != null) {
-					outputStream.close();
-				}
-			} catch (IOException e) {
-				throw new RuntimeException(e.getMessage(), e);
-			}
 		}
 	}
 
@@ -507,6 +1122,85 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		return retrieveDocumentSnapshotFromServerResponse(response, projectId);
 	}
 
+	/**
+	 * Downloads the project snapshot into the local snapshot file. Servers that can send the
+	 * snapshot in binary OWL format have it streamed straight to disk, so the ontology is only
+	 * ever parsed once, when the file is loaded. Otherwise the serialized snapshot is received
+	 * and written out as before.
+	 */
+	public void downloadSnapShot(@Nonnull ProjectId projectId) throws LoginTimeoutException, AuthorizationException,
+		ClientRequestException {
+		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		setStage("Downloading snapshot");
+		Request.Builder builder = new Request.Builder()
+			.url(serverAddress + PROJECT_SNAPSHOT + "?projectid=" + projectId.get())
+			.addHeader(authHeader, getAuthHeaderString())
+			.addHeader("Accept", BinaryOwlContentType.toString())
+			.get();
+		Response response = null;
+		try {
+			response = execute(builder, null);
+			if (!response.isSuccessful()) {
+				throwRequestExceptions(response);
+			}
+			MediaType contentType = response.body().contentType();
+			if (contentType == null || !BinaryOwlContentType.subtype().equals(contentType.subtype())) {
+				SnapShot snapshot = retrieveDocumentSnapshotFromServerResponse(response, projectId);
+				createLocalSnapShot(snapshot.getOntology(), projectId);
+				return;
+			}
+			String checksum = response.header(ServerProperties.SNAPSHOT_CHECKSUM_HEADER);
+			if (checksum == null) {
+				throw new ClientRequestException("Server did not send the snapshot checksum");
+			}
+			File snapshotFile = getSnapShotFile(projectId).get();
+			File tempFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+			try {
+				writeVerifiedSnapShot(response, tempFile, checksum);
+				Files.move(tempFile.toPath(), snapshotFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempFile.toPath());
+			}
+			writeSnapshotChecksum(projectId, checksum);
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			throw new ClientRequestException("Failed to download the project snapshot (see error log for details)", e);
+		} finally {
+			if (response != null) {
+				response.body().close();
+			}
+		}
+	}
+
+	/*
+	 * Copies the response body into the given file, computing its checksum on the way, and
+	 * checks it against the snapshot checksum sent by the server, i.e., the hex MD5 digest of
+	 * the snapshot file. A truncated or corrupted transfer is never used as a snapshot: on a
+	 * mismatch the file is deleted and the download fails.
+	 */
+	private void writeVerifiedSnapShot(Response response, File file, String expectedChecksum)
+			throws IOException, ClientRequestException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(SNAPSHOT_CHECKSUM_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		long written;
+		try (BufferedSink fileSink = Okio.buffer(Okio.sink(
+				new DigestOutputStream(new FileOutputStream(file), digest)))) {
+			written = fileSink.writeAll(response.body().source());
+		}
+		String actualChecksum = Hex.encodeHexString(digest.digest());
+		if (!expectedChecksum.trim().equalsIgnoreCase(actualChecksum)) {
+			Files.deleteIfExists(file.toPath());
+			throw new ClientRequestException(String.format(
+				"Snapshot checksum does not match, the download of %d bytes is corrupted", written));
+		}
+		logger.info(String.format("Downloaded snapshot of %d bytes", written));
+	}
+
 	private SnapShot retrieveDocumentSnapshotFromServerResponse(Response response, @Nonnull ProjectId projectId)
 		throws ClientRequestException {
 		if (projectId == null) throw new IllegalArgumentException("projectId is null");
@@ -529,42 +1223,150 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 	public ChangeHistory getAllChanges(ServerDocument sdoc, @Nonnull ProjectId projectId) throws LoginTimeoutException,
 		AuthorizationException, ClientRequestException {
 		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		HistoryFile historyFile = sdoc.getHistoryFile();
+		Response response = postWithProjectId(ALL_CHANGES,
+			new ObjectStreamRequestBody(ApplicationContentType, historyFile),
+			projectId,
+			true); // send request to server
+		return retrieveChangeHistoryFromServerResponse(response);
+	}
+
+	/**
+	 * Gets the metadata, i.e., author, date and comment, of at most <code>count</code> revisions
+	 * after the given one, in revision order, without their changes. Servers that cannot page
+	 * the history send all the revisions after the given one, of which only the metadata is kept.
+	 */
+	public List<RevisionMetadata> getRevisionMetadata(VersionedOWLOntology vont, @Nonnull ProjectId projectId,
+			DocumentRevision start, int count) throws AuthorizationException, ClientRequestException {
+		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		if (historyPagingSupported) {
+			HistoryFile historyFile = vont.getServerDocument().getHistoryFile();
+			RequestBody body = new ObjectStreamRequestBody(ApplicationContentType, historyFile, start, count);
+			Optional<Response> response = executeHistoryPageRequest(projectPostBuilder(HISTORY_METADATA, body, projectId), body);
+			if (response.isPresent()) {
+				return retrieveRevisionMetadataFromServerResponse(response.get());
+			}
+		}
+		ChangeHistory changes = getRevisions(vont, projectId, start, count);
+		List<RevisionMetadata> metadata = new ArrayList<>();
+		for (DocumentRevision revision : changes.getRevisions().keySet()) {
+			metadata.add(changes.getMetadataForRevision(revision));
+		}
+		return metadata;
+	}
+
+	/**
+	 * Gets at most <code>count</code> revisions after the given one, with their changes.
+	 */
+	public ChangeHistory getRevisions(VersionedOWLOntology vont, @Nonnull ProjectId projectId, DocumentRevision start,
+			int count) throws AuthorizationException, ClientRequestException {
+		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		HistoryFile historyFile = vont.getServerDocument().getHistoryFile();
+		if (historyPagingSupported) {
+			RequestBody body = new ObjectStreamRequestBody(ApplicationContentType, historyFile, start, count);
+			Optional<Response> response = executeHistoryPageRequest(projectPostBuilder(HISTORY_REVISIONS, body, projectId), body);
+			if (response.isPresent()) {
+				return retrieveChangeHistoryFromServerResponse(response.get());
+			}
+		}
+		ChangeHistory changes = getLatestChanges(vont.getServerDocument(), start, projectId);
+		int available = DocumentRevision.distance(changes.getBaseRevision(), changes.getHeadRevision());
+		return available <= count ? changes : ChangeHistoryUtils.crop(changes, changes.getBaseRevision(), count);
+	}
+
+	/*
+	 * Sends a request for a page of the history. Nothing is returned when the server does not
+	 * support paging, it is not asked again.
+	 */
+	private Optional<Response> executeHistoryPageRequest(Request.Builder builder, RequestBody body)
+			throws AuthorizationException, ClientRequestException {
+		Response response = executeProjectRequest(builder, body);
+		switch (response.code()) {
+			case StatusCodes.NOT_FOUND:
+			case StatusCodes.METHOD_NOT_ALLOWED:
+			case StatusCodes.NOT_IMPLEMENTED:
+				logger.info("Server does not support paging the history, falling back to the latest changes");
+				historyPagingSupported = false;
+				response.body().close();
+				return Optional.empty();
+			default:
+				if (!response.isSuccessful()) {
+					response.body().close();
+					throwRequestExceptions(response);
+				}
+				return Optional.of(response);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<RevisionMetadata> retrieveRevisionMetadataFromServerResponse(Response response)
+		throws ClientRequestException {
 		try {
-			HistoryFile historyFile = sdoc.getHistoryFile();
-			ByteArrayOutputStream b = writeRequestArgumentsIntoByteStream(historyFile);
-			Response response = postWithProjectId(ALL_CHANGES,
-				RequestBody.create(ApplicationContentType, b.toByteArray()),
-				projectId,
-				true); // send request to server
-			return retrieveChangeHistoryFromServerResponse(response);
-		} catch (IOException e) {
+			ObjectInputStream ois = new ObjectInputStream(response.body().byteStream());
+			return (List<RevisionMetadata>) ois.readObject();
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
 			logger.error(e.getMessage(), e);
-			throw new ClientRequestException("Unable to send request to server (see error log for details)", e);
+			throw new ClientRequestException("Failed to read data from server (see error log for details)", e);
+		} finally {
+			response.body().close();
 		}
 	}
 
-	private ByteArrayOutputStream writeRequestArgumentsIntoByteStream(HistoryFile historyFile)
-		throws IOException {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		ObjectOutputStream os = new ObjectOutputStream(b);
-		os.writeObject(historyFile);
-		return b;
+	public DocumentRevision getRemoteHeadRevision(VersionedOWLOntology vont, @Nonnull ProjectId projectId) throws
+		AuthorizationException, ClientRequestException {
+		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		return getRemoteHeadRevision(vont.getServerDocument(), projectId);
 	}
 
-	public DocumentRevision getRemoteHeadRevision(VersionedOWLOntology vont, @Nonnull ProjectId projectId) throws
+	private DocumentRevision getRemoteHeadRevision(ServerDocument sdoc, @Nonnull ProjectId projectId) throws
 		AuthorizationException, ClientRequestException {
+		HistoryFile historyFile = sdoc.getHistoryFile();
+		Response response = postWithProjectId(HEAD,
+			new ObjectStreamRequestBody(ApplicationContentType, historyFile),
+			projectId,
+			true); // send request to server
+		return retrieveDocumentRevisionFromServerResponse(response);
+	}
+
+	public boolean isHeadWatchSupported() {
+		return headWatchSupported;
+	}
+
+	/**
+	 * Waits until the head of the project moves past the given revision, for at most the given
+	 * number of seconds. The server holds the request open until then (long polling).
+	 *
+	 * @return the new remote head revision, or nothing if the head did not move in time or the
+	 * server does not support watching the head (see {@link #isHeadWatchSupported()})
+	 */
+	public Optional<DocumentRevision> awaitHeadChange(VersionedOWLOntology vont, DocumentRevision knownHead,
+			@Nonnull ProjectId projectId, int timeoutSeconds) throws AuthorizationException, ClientRequestException {
 		if (projectId == null) throw new IllegalArgumentException("projectId is null");
-		try {
-			HistoryFile historyFile = vont.getServerDocument().getHistoryFile();
-			ByteArrayOutputStream b = writeRequestArgumentsIntoByteStream(historyFile);
-			Response response = postWithProjectId(HEAD,
-				RequestBody.create(ApplicationContentType, b.toByteArray()),
-				projectId,
-				true); // send request to server
-			return retrieveDocumentRevisionFromServerResponse(response);
-		} catch (IOException e) {
-			logger.error(e.getMessage(), e);
-			throw new ClientRequestException("Unable to send request to server (see error log for details)", e);
+		if (!headWatchSupported) {
+			return Optional.empty();
+		}
+		HistoryFile historyFile = vont.getServerDocument().getHistoryFile();
+		RequestBody body = new ObjectStreamRequestBody(ApplicationContentType, historyFile, knownHead);
+		Request.Builder builder = projectPostBuilder(HEAD_WATCH + "?timeout=" + timeoutSeconds, body, projectId);
+		Response response = executeProjectRequest(builder, body);
+		switch (response.code()) {
+			case StatusCodes.NOT_FOUND:
+			case StatusCodes.METHOD_NOT_ALLOWED:
+			case StatusCodes.NOT_IMPLEMENTED:
+				logger.info("Server does not support watching the project head, falling back to polling");
+				headWatchSupported = false;
+				response.body().close();
+				return Optional.empty();
+			case StatusCodes.NO_CONTENT:
+			case StatusCodes.NOT_MODIFIED:
+				response.body().close();
+				return Optional.empty();
+			default:
+				if (!response.isSuccessful()) {
+					response.body().close();
+					throwRequestExceptions(response);
+				}
+				return Optional.of(retrieveDocumentRevisionFromServerResponse(response));
 		}
 	}
 
@@ -584,6 +1386,37 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		}
 	}
 
+	/**
+	 * Gets the revisions committed after the local head of the given versioned ontology in a
+	 * single conditional request. The local head goes along as an entity tag, so that a server
+	 * that supports it can answer "304 Not Modified" without sending any history.
+	 *
+	 * @return the new revisions, or nothing if the local copy is up-to-date
+	 */
+	public Optional<ChangeHistory> getChangesSince(VersionedOWLOntology vont, @Nonnull ProjectId projectId)
+			throws AuthorizationException, ClientRequestException {
+		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		DocumentRevision start = vont.getChangeHistory().getHeadRevision();
+		HistoryFile historyFile = vont.getServerDocument().getHistoryFile();
+		RequestBody body = new ObjectStreamRequestBody(ApplicationContentType, historyFile, start);
+		Request.Builder builder = projectPostBuilder(LATEST_CHANGES, body, projectId)
+			.addHeader("If-None-Match", "\"" + DocumentRevision.distance(DocumentRevision.START_REVISION, start) + "\"");
+		Response response = executeProjectRequest(builder, body);
+		if (response.code() == StatusCodes.NOT_MODIFIED) {
+			response.body().close();
+			return Optional.empty();
+		}
+		if (!response.isSuccessful()) {
+			response.body().close();
+			throwRequestExceptions(response);
+		}
+		ChangeHistory changes = retrieveChangeHistoryFromServerResponse(response);
+		if (changes.getRevisions().isEmpty() || changes.getHeadRevision().sameAs(start)) {
+			return Optional.empty(); // servers without conditional requests send an empty history
+		}
+		return Optional.of(changes);
+	}
+
 	public ChangeHistory getLatestChanges(VersionedOWLOntology vont, @Nonnull ProjectId projectId)
 			throws AuthorizationException, ClientRequestException {
 		if (projectId == null) throw new IllegalArgumentException("projectId is null");
@@ -594,39 +1427,20 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 	public ChangeHistory getLatestChanges(ServerDocument sdoc, DocumentRevision start, @Nonnull ProjectId projectId)
 		throws AuthorizationException, ClientRequestException {
 		if (projectId == null) throw new IllegalArgumentException("projectId is null");
-		try {
-			HistoryFile historyFile = sdoc.getHistoryFile();
-			ByteArrayOutputStream b = writeRequestArgumentsIntoByteStream(start, historyFile);
-			Response response = postWithProjectId(LATEST_CHANGES,
-				RequestBody.create(ApplicationContentType, b.toByteArray()),
-				projectId,
-				true); // send request to server
-			return retrieveChangeHistoryFromServerResponse(response);
-		} catch (IOException e) {
-			logger.error(e.getMessage(), e);
-			throw new ClientRequestException("Unable to send request to server (see error log for details)", e);
-		}
-	}
-
-	private ByteArrayOutputStream writeRequestArgumentsIntoByteStream(
-			DocumentRevision start, HistoryFile historyFile) throws IOException {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		ObjectOutputStream os = new ObjectOutputStream(b);
-		os.writeObject(historyFile);
-		os.writeObject(start);
-		return b;
+		HistoryFile historyFile = sdoc.getHistoryFile();
+		Response response = postWithProjectId(LATEST_CHANGES,
+			new ObjectStreamRequestBody(ApplicationContentType, historyFile, start),
+			projectId,
+			true); // send request to server
+		return retrieveChangeHistoryFromServerResponse(response);
 	}
 
 	public void squashHistory(SnapShot snapshot, @Nonnull ProjectId projectId) throws ClientRequestException {
 		if (projectId == null) throw new IllegalArgumentException("projectId is null");
 		checkSnapshotChecksumPresent(projectId);
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
 		try {
-			ObjectOutputStream oos = new ObjectOutputStream(b);
-			oos.writeObject(snapshot);
-
 			Response response = postWithProjectId(SQUASH,
-				RequestBody.create(ApplicationContentType, b.toByteArray()),
+				new ObjectStreamRequestBody(ApplicationContentType, snapshot),
 				projectId,
 				true);
 
@@ -685,6 +1499,36 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		return builder;
 	}
 
+	private Request.Builder projectPostBuilder(String url, RequestBody body, @Nonnull ProjectId projectId) {
+		checkSnapshotChecksumPresent(projectId);
+		return projectPostBuilder(url, body, projectId, getSnapshotChecksum(projectId).get());
+	}
+
+	private Request.Builder projectPostBuilder(String url, RequestBody body, @Nonnull ProjectId projectId,
+			String snapshotChecksum) {
+		return postBuilder(url, body, true)
+			.addHeader(ServerProperties.PROJECTID_HEADER, projectId.get())
+			.addHeader(ServerProperties.SNAPSHOT_CHECKSUM_HEADER, snapshotChecksum);
+	}
+
+	/*
+	 * Sends a project request and leaves the handling of the response status to the caller,
+	 * except for an out-of-date history snapshot.
+	 */
+	private Response executeProjectRequest(Request.Builder builder, RequestBody body) throws ClientRequestException {
+		try {
+			Response response = execute(builder, body);
+			if (response.code() == ServerProperties.HISTORY_SNAPSHOT_OUT_OF_DATE) {
+				response.body().close();
+				throw new ClientRequestException("Snapshot out of sync with server, please logout and login");
+			}
+			return response;
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			throw new ClientRequestException("Unable to send request to server (see error log for details)", e);
+		}
+	}
+
 	private Response postWithProjectId(String url, RequestBody body, @Nonnull ProjectId projectId, boolean withCredential)
 			throws AuthorizationException, ClientRequestException {
 		if (projectId == null) {
@@ -701,7 +1545,7 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		builder.addHeader(ServerProperties.SNAPSHOT_CHECKSUM_HEADER, snapshotChecksum.get());
 
 		try {
-			Response response = httpClient.newCall(builder.build()).execute();
+			Response response = execute(builder, body);
 
 			if (!response.isSuccessful() && response.code() == ServerProperties.HISTORY_SNAPSHOT_OUT_OF_DATE) {
 				
@@ -751,7 +1595,7 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		Request.Builder builder = postBuilder(url, body, withCredential);
 
 		try {
-			Response response = httpClient.newCall(builder.build()).execute();
+			Response response = execute(builder, body);
 
 			if (!response.isSuccessful()) {
 				throwRequestExceptions(response);
@@ -765,21 +1609,14 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 
 	private Response delete(String url, boolean withCredential) throws LoginTimeoutException,
 		AuthorizationException, ClientRequestException {
-		Request request;
+		Request.Builder builder = new Request.Builder()
+			.url(serverAddress + url)
+			.delete();
 		if (withCredential) {
-			request = new Request.Builder()
-				.url(serverAddress + url)
-				.addHeader(authHeader, getAuthHeaderString())
-				.delete()
-				.build();
-		} else {
-			request = new Request.Builder()
-				.url(serverAddress + url)
-				.delete()
-				.build();
+			builder = builder.addHeader(authHeader, getAuthHeaderString());
 		}
 		try {
-			Response response = httpClient.newCall(request).execute();
+			Response response = execute(builder, null);
 			if (!response.isSuccessful()) {
 				throwRequestExceptions(response);
 			}
@@ -792,13 +1629,12 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 
 	private Response get(String url) throws LoginTimeoutException, AuthorizationException,
 		ClientRequestException {
-		Request request = new Request.Builder()
+		Request.Builder builder = new Request.Builder()
 			.url(serverAddress + url)
 			.addHeader(authHeader, getAuthHeaderString())
-			.get()
-			.build();
+			.get();
 		try {
-			Response response = httpClient.newCall(request).execute();
+			Response response = execute(builder, null);
 			if (!response.isSuccessful()) {
 				throwRequestExceptions(response);
 			}
@@ -809,6 +1645,71 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		}
 	}
 
+	/*
+	 * Sends the request built so far. Serialized request bodies are gzip-compressed once the
+	 * server has advertised support for it. Compressed responses need no handling here: OkHttp
+	 * asks for gzip by itself and inflates the response body transparently. If the server
+	 * rejects a compressed body the request is resent as-is and compression is switched off.
+	 */
+	private Response execute(Request.Builder builder, RequestBody body) throws IOException {
+		boolean compress = serverAcceptsGzip && body instanceof ObjectStreamRequestBody;
+		if (compress) {
+			builder.header(contentEncodingHeader, gzipEncoding).post(new GzipRequestBody(body));
+		}
+		Response response = executeCall(builder);
+		if (compress && response.code() == StatusCodes.UNSUPPORTED_MEDIA_TYPE) {
+			logger.info("Server does not accept compressed requests, falling back to uncompressed");
+			serverAcceptsGzip = false;
+			response.body().close();
+			builder.removeHeader(contentEncodingHeader).post(body);
+			response = executeCall(builder);
+		}
+		recordAcceptedEncodings(response);
+		return response;
+	}
+
+	/*
+	 * Creates and executes the call for the request. When the calling thread works on an
+	 * operation, the call is tagged with its handle, so that the transferred bytes are reported
+	 * to it, and is aborted when the operation is cancelled, up until the response body is closed.
+	 */
+	private Response executeCall(Request.Builder builder) throws IOException {
+		Optional<OperationHandle> handle = OperationHandle.current();
+		handle.ifPresent(builder::tag);
+		Call call = httpClient.newCall(builder.build());
+		if (!handle.isPresent()) {
+			return call.execute();
+		}
+		OperationHandle.Registration registration = handle.get().onCancel(call::cancel);
+		try {
+			Response response = call.execute();
+			return response.newBuilder().body(new RegisteredResponseBody(response.body(), registration)).build();
+		} catch (IOException | RuntimeException e) {
+			registration.close();
+			throw e;
+		}
+	}
+
+	/*
+	 * Once the request that makes a revision out of a commit has been sent in full, the server may
+	 * accept it at any time. Cancelling from then on would report the changes as uncommitted while
+	 * the server has them, so the operation can no longer be cancelled.
+	 */
+	private static void disableCancel() {
+		OperationHandle.current().ifPresent(OperationHandle::disableCancel);
+	}
+
+	private static void setStage(String stage) {
+		OperationHandle.current().ifPresent(h -> h.setStage(stage));
+	}
+
+	private void recordAcceptedEncodings(Response response) {
+		String acceptedEncodings = response.header(acceptEncodingHeader);
+		if (acceptedEncodings != null) {
+			serverAcceptsGzip = acceptedEncodings.toLowerCase().contains(gzipEncoding);
+		}
+	}
+
 	private String getAuthHeaderString() {
 		String toenc = userId.get() + ":" + userInfo.getNonce();
 		return "Basic " + new String(Base64.encodeBase64(toenc.getBytes()));
@@ -863,16 +1764,11 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 
 	public void putEVSHistory(String code, String name, String operation, String reference, @Nonnull ProjectId projectId)
 		throws LoginTimeoutException, AuthorizationException, ClientRequestException {
-		try {
-			History evsHistory = new History(userId.get(), code, name, operation, reference);
-			ByteArrayOutputStream b = writeRequestArgumentsIntoByteStream(evsHistory);
-			post(EVS_REC + "?projectid=" + projectId.get(),
-				RequestBody.create(ApplicationContentType, b.toByteArray()),
-				true); // send request to server
-		} catch (IOException e) {
-			logger.error(e.getMessage(), e);
-			throw new ClientRequestException("Failed to send data (see error log for details)", e);
-		}
+		History evsHistory = new History(userId.get(), code, name, operation, reference);
+		Response response = post(EVS_REC + "?projectid=" + projectId.get(),
+			new ObjectStreamRequestBody(ApplicationContentType, evsHistory),
+			true); // send request to server
+		response.body().close();
 	}
 	
 	public boolean checkEvsHistoryCreate(String code, @Nonnull ProjectId projectId)
@@ -890,17 +1786,10 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 	
 	public List<History> getEVSHistory(History query, @Nonnull ProjectId projectId)
 			throws LoginTimeoutException, AuthorizationException, ClientRequestException {
-		try {
-			ByteArrayOutputStream b = writeRequestArgumentsIntoByteStream(query);
-			Response response = post(EVS_HIST + "?projectid=" + projectId.get(),
-				RequestBody.create(ApplicationContentType, b.toByteArray()),
-				true); // send request to server
-			return this.retrieveEVSHistoryFromServerResponse(response);
-		} catch (IOException e) {
-			logger.error(e.getMessage(), e);
-			throw new ClientRequestException("Failed to send data (see error log for details)", e);
-		}
-		
+		Response response = post(EVS_HIST + "?projectid=" + projectId.get(),
+			new ObjectStreamRequestBody(ApplicationContentType, query),
+			true); // send request to server
+		return this.retrieveEVSHistoryFromServerResponse(response);
 	}
 
 	public void genConceptHistory(@Nonnull ProjectId projectId)
@@ -921,14 +1810,6 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 		checksumStream.write(checksum.getBytes());
 	}
 
-	private ByteArrayOutputStream writeRequestArgumentsIntoByteStream(History hist)
-		throws IOException {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		ObjectOutputStream os = new ObjectOutputStream(b);
-		os.writeObject(hist);
-		return b;
-	}
-
 	private void throwRequestExceptions(Response response)
 		throws LoginTimeoutException, AuthorizationException, ClientRequestException {
 		String originalMessage = response.header("Error-Message");
@@ -1011,4 +1892,42 @@ public class LocalHttpClient implements Client, ClientSessionListener {
 			}
 		}
 	}
+
+	/*
+	 * Closes the cancel registration of a call along with its response body.
+	 */
+	private static class RegisteredResponseBody extends ResponseBody {
+
+		private final ResponseBody delegate;
+		private final BufferedSource source;
+
+		RegisteredResponseBody(ResponseBody delegate, OperationHandle.Registration registration) {
+			this.delegate = delegate;
+			source = Okio.buffer(new ForwardingSource(delegate.source()) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						registration.close();
+					}
+				}
+			});
+		}
+
+		@Override
+		public MediaType contentType() {
+			return delegate.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return delegate.contentLength();
+		}
+
+		@Override
+		public BufferedSource source() {
+			return source;
+		}
+	}
 }
@@ -0,0 +1,136 @@
+package org.protege.editor.owl.client;
+
+import org.protege.editor.owl.model.history.ReverseChangeGenerator;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+
+/**
+ * The net effect of a sequence of ontology changes, kept up-to-date one change at a time.
+ * Changes are keyed by the object they are about (axiom, import declaration, ontology
+ * annotation or ontology ID) in their ontology. A change that reverts the pending change on
+ * the same key cancels it out, e.g., adding an axiom and then removing it (or undoing the
+ * addition) leaves nothing behind.
+ *
+ * The result is the same as running a <code>ChangeListMinimizer</code> over the whole
+ * sequence, but each change costs constant time instead of a pass over the full sequence.
+ */
+class NetChangeSet {
+
+	private static final Object ONTOLOGY_ID = new Object();
+
+	private final Map<Object, OWLOntologyChange> netChanges = new LinkedHashMap<>();
+
+	private final Map<Object, OWLOntologyID> originalOntologyIds = new HashMap<>();
+
+	private long version = 0;
+
+	private List<OWLOntologyChange> snapshot = Collections.emptyList();
+
+	private long snapshotVersion = 0;
+
+	public synchronized void add(OWLOntologyChange change) {
+		Object key = getKey(change);
+		OWLOntologyChange pending = netChanges.get(key);
+		if (change instanceof SetOntologyID) {
+			SetOntologyID setOntologyId = (SetOntologyID) change;
+			originalOntologyIds.putIfAbsent(key, setOntologyId.getOriginalOntologyID());
+			if (setOntologyId.getNewOntologyID().equals(originalOntologyIds.get(key))) {
+				netChanges.remove(key);
+				originalOntologyIds.remove(key);
+			}
+			else {
+				netChanges.put(key, change);
+			}
+		}
+		else if (pending != null && isAddition(pending) != isAddition(change)) {
+			netChanges.remove(key);
+		}
+		else {
+			netChanges.put(key, change);
+		}
+		version++;
+	}
+
+	public synchronized void addAll(List<? extends OWLOntologyChange> changes) {
+		for (OWLOntologyChange change : changes) {
+			add(change);
+		}
+	}
+
+	public synchronized boolean isEmpty() {
+		return netChanges.isEmpty();
+	}
+
+	public synchronized int size() {
+		return netChanges.size();
+	}
+
+	/**
+	 * Gets the net changes in the order their keys were first changed. The returned list is
+	 * immutable and shared until the next change.
+	 */
+	public synchronized List<OWLOntologyChange> getChanges() {
+		if (snapshotVersion != version) {
+			snapshot = Collections.unmodifiableList(new ArrayList<>(netChanges.values()));
+			snapshotVersion = version;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Moves the baseline forward past the given changes, which are now committed. Pending
+	 * changes that were committed as they are drop out, while the changes made after the commit
+	 * was taken stay pending, relative to the new baseline.
+	 */
+	public synchronized void rebaseOnto(List<OWLOntologyChange> committedChanges) {
+		for (OWLOntologyChange committed : committedChanges) {
+			Object key = getKey(committed);
+			OWLOntologyChange pending = netChanges.get(key);
+			if (committed.equals(pending)) {
+				netChanges.remove(key);
+				originalOntologyIds.remove(key);
+			}
+			else if (pending == null) {
+				// the committed change was reverted in the meantime, which is now a change of its own
+				ReverseChangeGenerator gen = new ReverseChangeGenerator();
+				committed.accept(gen);
+				add(gen.getReverseChange());
+			}
+			else if (committed instanceof SetOntologyID) {
+				originalOntologyIds.put(key, ((SetOntologyID) committed).getNewOntologyID());
+			}
+		}
+		version++;
+	}
+
+	public synchronized void clear() {
+		netChanges.clear();
+		originalOntologyIds.clear();
+		version++;
+	}
+
+	private static Object getKey(OWLOntologyChange change) {
+		Object signature;
+		if (change instanceof OWLAxiomChange) {
+			signature = ((OWLAxiomChange) change).getAxiom();
+		}
+		else if (change instanceof ImportChange) {
+			signature = ((ImportChange) change).getImportDeclaration();
+		}
+		else if (change instanceof AnnotationChange) {
+			signature = ((AnnotationChange) change).getAnnotation();
+		}
+		else if (change instanceof SetOntologyID) {
+			signature = ONTOLOGY_ID;
+		}
+		else {
+			signature = change; // not a known kind of change, never merged
+		}
+		return Arrays.asList(change.getOntology(), signature);
+	}
+
+	private static boolean isAddition(OWLOntologyChange change) {
+		return change instanceof AddAxiom || change instanceof AddImport || change instanceof AddOntologyAnnotation;
+	}
+}
@@ -0,0 +1,144 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.Project;
+import edu.stanford.protege.metaproject.api.ProjectId;
+import edu.stanford.protege.metaproject.impl.ConfigurationUtils;
+import org.protege.editor.owl.client.LocalHttpClient.UserType;
+import org.protege.editor.owl.client.api.OperationHandle;
+import org.protege.editor.owl.client.api.exception.AuthorizationException;
+import org.protege.editor.owl.client.api.exception.LoginTimeoutException;
+import org.protege.editor.owl.client.util.ClientScheduler;
+import org.protege.editor.owl.client.util.ClientScheduler.Lane;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Downloads the snapshots and histories of the projects the user can open while nobody is
+ * waiting for them, so that the first open of a project in a session only loads local files
+ * and fetches the latest revisions.
+ *
+ * The projects are prefetched one at a time on the prefetch lane of the client scheduler, each
+ * as a task of its own, so that the bulk transfers the user asks for, e.g., the history of a
+ * project being opened, never wait for a prefetch. The transfers are kept within the bandwidth
+ * limit set in the client preferences, and make way for opening a project: the prefetch of
+ * the project is cancelled, and the next one waits until the open is done. Projects that are
+ * already open are skipped.
+ */
+public class ProjectPrefetcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProjectPrefetcher.class);
+
+	private static final long START_DELAY = 30; // in seconds, leaves the bandwidth to the first open
+
+	private static final long YIELD_DELAY = 5; // in seconds, between checks whether an open is done
+
+	private final LocalHttpClient client;
+	private final Predicate<ProjectId> isOpen;
+
+	private volatile boolean running = false;
+	private volatile OperationHandle currentHandle;
+
+	public ProjectPrefetcher(LocalHttpClient client, Predicate<ProjectId> isOpen) {
+		this.client = client;
+		this.isOpen = isOpen;
+	}
+
+	public synchronized void start() {
+		if (running || client.getClientType() == UserType.ADMIN) { // admin clients cannot open projects
+			return;
+		}
+		running = true;
+		Deque<ProjectId> projectIds = new ArrayDeque<>();
+		for (Project project : getProjects()) {
+			projectIds.add(project.getId());
+		}
+		logger.info(String.format("Prefetching %d project(s) in the background", projectIds.size()));
+		ClientScheduler.getInstance().schedule(Lane.PREFETCH, () -> prefetchNext(projectIds), START_DELAY,
+			TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops prefetching. The transfer in progress, if any, is aborted.
+	 */
+	public void stop() {
+		running = false;
+		OperationHandle handle = currentHandle;
+		if (handle != null) {
+			handle.cancel();
+		}
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	private List<Project> getProjects() {
+		List<Project> projects = new ArrayList<>(client.getProjects());
+		projects.remove(ConfigurationUtils.getUniversalProject());
+		Collections.sort(projects);
+		return projects;
+	}
+
+	private void prefetchNext(Deque<ProjectId> projectIds) {
+		ProjectId projectId = projectIds.poll();
+		if (projectId == null) {
+			running = false;
+			logger.info("Finished prefetching projects");
+			return;
+		}
+		if (!isOpen.test(projectId) && !prefetch(projectId)) {
+			projectIds.addFirst(projectId); // a project is being opened, tried again once it is
+			if (running) {
+				ClientScheduler.getInstance().schedule(Lane.PREFETCH, () -> prefetchNext(projectIds), YIELD_DELAY,
+					TimeUnit.SECONDS);
+			}
+			return;
+		}
+		if (running) {
+			ClientScheduler.getInstance().submit(Lane.PREFETCH, () -> prefetchNext(projectIds));
+		}
+	}
+
+	/*
+	 * Prefetches the project, unless a project is being opened. Returns whether the project is
+	 * done with, prefetched or not.
+	 */
+	private boolean prefetch(ProjectId projectId) {
+		if (client.isOpening()) {
+			return false;
+		}
+		OperationHandle handle = new OperationHandle("Prefetch " + projectId.get());
+		handle.setBandwidthLimit(ClientPreferences.getInstance().getPrefetchBandwidthLimit() * 1024L);
+		currentHandle = handle;
+		long startTime = System.currentTimeMillis();
+		try (OperationHandle.Scope scope = handle.attach()) {
+			if (!running) {
+				return true; // stopped before the handle could be cancelled
+			}
+			if (!client.prefetchProject(projectId)) {
+				return false;
+			}
+			logger.info(String.format("Prefetched %s in %d ms, %.1f MB transferred", projectId,
+				System.currentTimeMillis() - startTime, handle.getBytesTransferred() / (1024.0 * 1024.0)));
+		} catch (LoginTimeoutException | AuthorizationException e) {
+			logger.info("Stopped prefetching projects: " + e.getMessage());
+			running = false;
+		} catch (Exception e) {
+			if (!handle.isCancelled()) {
+				logger.warn("Unable to prefetch " + projectId, e);
+			}
+		} finally {
+			handle.finish();
+			currentHandle = null;
+		}
+		return true;
+	}
+}
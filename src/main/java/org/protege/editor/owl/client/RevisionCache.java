@@ -0,0 +1,97 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import org.protege.editor.owl.server.versioning.api.ChangeHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Keeps the change history of a project on disk, next to its history snapshot,
+ * so that opening the project again only needs to fetch the revisions that were
+ * committed since it was last opened.
+ *
+ * The cached history is only valid for the server snapshot it was fetched
+ * against. Each entry therefore records the snapshot checksum, and an entry
+ * with a different checksum (e.g., after the server squashed the history) is
+ * discarded.
+ */
+public class RevisionCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(RevisionCache.class);
+
+	private static final String REVISION_CACHE = "history-revisions";
+
+	private final ProjectId projectId;
+
+	public RevisionCache(@Nonnull ProjectId projectId) {
+		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		this.projectId = projectId;
+	}
+
+	/**
+	 * Loads the cached change history, if there is one and it was fetched
+	 * against the snapshot with the given checksum.
+	 */
+	public Optional<ChangeHistory> load(@Nonnull String snapshotChecksum) {
+		Optional<File> cacheFile = LocalHttpClient.getProjectFile(projectId, REVISION_CACHE);
+		if (!cacheFile.isPresent() || !cacheFile.get().exists()) {
+			return Optional.empty();
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(
+				new BufferedInputStream(new FileInputStream(cacheFile.get())))) {
+			String checksum = (String) ois.readObject();
+			if (!snapshotChecksum.equals(checksum)) {
+				logger.info("Discarding revision cache of " + projectId + ", the server snapshot has changed");
+				clear();
+				return Optional.empty();
+			}
+			return Optional.of((ChangeHistory) ois.readObject());
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			logger.warn("Unable to read revision cache of " + projectId + ", discarding it", e);
+			clear();
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Stores the given change history, replacing any previous entry. The file
+	 * is written aside and moved into place so that an interrupted write never
+	 * leaves a truncated cache behind.
+	 */
+	public void save(@Nonnull ChangeHistory changeHistory, @Nonnull String snapshotChecksum) {
+		Optional<File> cacheFile = LocalHttpClient.getProjectFile(projectId, REVISION_CACHE);
+		if (!cacheFile.isPresent()) {
+			return;
+		}
+		File tempFile = new File(cacheFile.get().getAbsolutePath() + ".tmp");
+		try (ObjectOutputStream oos = new ObjectOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			oos.writeObject(snapshotChecksum);
+			oos.writeObject(changeHistory);
+		} catch (IOException e) {
+			logger.warn("Unable to write revision cache of " + projectId, e);
+			tempFile.delete();
+			return;
+		}
+		try {
+			Files.move(tempFile.toPath(), cacheFile.get().toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warn("Unable to write revision cache of " + projectId, e);
+			tempFile.delete();
+		}
+	}
+
+	public void clear() {
+		Optional<File> cacheFile = LocalHttpClient.getProjectFile(projectId, REVISION_CACHE);
+		if (cacheFile.isPresent()) {
+			cacheFile.get().delete();
+		}
+	}
+}
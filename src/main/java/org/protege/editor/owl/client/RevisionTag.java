@@ -0,0 +1,98 @@
+package org.protege.editor.owl.client;
+
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The tag of a piece of local project data that was built up to some revision
+ * of the project, e.g., a head checkpoint or the search index. It holds that
+ * revision, the checksum of the server snapshot the history is on top of and,
+ * optionally, the revision that snapshot is at. A tag with a different snapshot
+ * checksum is stale.
+ *
+ * The tag file has one value per line: the revision number (the distance from
+ * the start revision), the snapshot checksum and, if recorded, the base
+ * revision number. It is written aside and moved into place, so a reader sees
+ * either the old tag or the new one.
+ */
+class RevisionTag {
+
+	private final DocumentRevision revision;
+	private final String snapshotChecksum;
+	private final Optional<DocumentRevision> baseRevision;
+
+	RevisionTag(DocumentRevision revision, @Nonnull String snapshotChecksum,
+			Optional<DocumentRevision> baseRevision) {
+		this.revision = revision;
+		this.snapshotChecksum = snapshotChecksum;
+		this.baseRevision = baseRevision;
+	}
+
+	DocumentRevision getRevision() {
+		return revision;
+	}
+
+	Optional<DocumentRevision> getBaseRevision() {
+		return baseRevision;
+	}
+
+	/**
+	 * Checks whether the tag was written on top of the server snapshot with the
+	 * given checksum.
+	 */
+	boolean isOnSnapshot(String checksum) {
+		return snapshotChecksum.equals(checksum);
+	}
+
+	/**
+	 * Reads the tag from the given file, if there is one. Fails if the file cannot
+	 * be read or is not a tag.
+	 */
+	static Optional<RevisionTag> read(File file) throws IOException {
+		if (!file.exists()) {
+			return Optional.empty();
+		}
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		if (lines.size() < 2) {
+			throw new IOException("Incomplete revision tag: " + file);
+		}
+		try {
+			return Optional.of(new RevisionTag(toRevision(lines.get(0)), lines.get(1),
+					lines.size() >= 3 ? Optional.of(toRevision(lines.get(2))) : Optional.empty()));
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed revision tag: " + file, e);
+		}
+	}
+
+	/**
+	 * Writes the tag to the given file, replacing the previous one.
+	 */
+	void write(File file) throws IOException {
+		String tag = toNumber(revision) + "\n" + snapshotChecksum
+				+ (baseRevision.isPresent() ? "\n" + toNumber(baseRevision.get()) : "");
+		File tempFile = new File(file.getAbsolutePath() + ".tmp");
+		try {
+			Files.write(tempFile.toPath(), tag.getBytes(StandardCharsets.UTF_8));
+			Files.move(tempFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static DocumentRevision toRevision(String number) {
+		return DocumentRevision.START_REVISION.next(Integer.parseInt(number.trim()));
+	}
+
+	private static int toNumber(DocumentRevision revision) {
+		return DocumentRevision.distance(DocumentRevision.START_REVISION, revision);
+	}
+}
@@ -0,0 +1,81 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Records up to which revision the changes of a project have been fed to the
+ * search index, so that reopening the project only needs to index the
+ * revisions committed after it rather than the whole history.
+ *
+ * Like a head checkpoint, the tag holds the revision and the checksum of the
+ * server snapshot the history is on top of, see {@link RevisionTag}; a tag
+ * with a different checksum is stale and discarded.
+ */
+public class SearchIndexTag {
+
+	private static final Logger logger = LoggerFactory.getLogger(SearchIndexTag.class);
+
+	private static final String SEARCH_INDEX_TAG = "search-index-tag";
+
+	private final ProjectId projectId;
+
+	public SearchIndexTag(@Nonnull ProjectId projectId) {
+		if (projectId == null) throw new IllegalArgumentException("projectId is null");
+		this.projectId = projectId;
+	}
+
+	/**
+	 * Gets the revision the search index covers, provided that it was recorded
+	 * on top of the server snapshot with the given checksum.
+	 */
+	public Optional<DocumentRevision> getRevision(@Nonnull String snapshotChecksum) {
+		Optional<File> tagFile = LocalHttpClient.getProjectFile(projectId, SEARCH_INDEX_TAG);
+		if (!tagFile.isPresent()) {
+			return Optional.empty();
+		}
+		try {
+			Optional<RevisionTag> tag = RevisionTag.read(tagFile.get());
+			if (tag.isPresent() && !tag.get().isOnSnapshot(snapshotChecksum)) {
+				logger.info("Discarding stale search index tag of " + projectId);
+				clear();
+				return Optional.empty();
+			}
+			return tag.map(RevisionTag::getRevision);
+		} catch (IOException e) {
+			logger.warn("Unable to read search index tag of " + projectId + ", discarding it", e);
+			clear();
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Records that the search index covers the revisions up to the given one.
+	 */
+	public void write(DocumentRevision revision, @Nonnull String snapshotChecksum) {
+		Optional<File> tagFile = LocalHttpClient.getProjectFile(projectId, SEARCH_INDEX_TAG);
+		if (!tagFile.isPresent()) {
+			return;
+		}
+		try {
+			new RevisionTag(revision, snapshotChecksum, Optional.empty()).write(tagFile.get());
+		} catch (IOException e) {
+			logger.warn("Unable to write search index tag of " + projectId, e);
+			clear();
+		}
+	}
+
+	public void clear() {
+		Optional<File> tagFile = LocalHttpClient.getProjectFile(projectId, SEARCH_INDEX_TAG);
+		if (tagFile.isPresent()) {
+			tagFile.get().delete();
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package org.protege.editor.owl.client;
+
+import org.protege.editor.owl.client.api.OperationHandle;
+import org.semanticweb.binaryowl.BinaryOWLOntologyDocumentSerializer;
+import org.semanticweb.binaryowl.owlapi.BinaryOWLOntologyBuildingHandler;
+import org.semanticweb.binaryowl.owlapi.OWLOntologyWrapper;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads and writes binary OWL ontology files in a segmented layout that can be loaded in
+ * parallel. The file starts with a magic string and a table of segments, followed by the
+ * segments themselves. Each segment is a complete binary OWL document holding a slice of the
+ * axioms; the first one also holds the ontology ID, the imports and the ontology annotations.
+ *
+ * On load every segment is memory-mapped and decoded into a scratch ontology on the fork-join
+ * pool. The axioms are then added to the target ontology segment by segment, in
+ * file order. Files in the plain, single document layout (e.g., a snapshot downloaded from the
+ * server) are still read, sequentially.
+ */
+class SegmentedSnapShot {
+
+	private static final Logger logger = LoggerFactory.getLogger(SegmentedSnapShot.class);
+
+	private static final byte[] MAGIC = "PRTGSEG1".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int AXIOMS_PER_SEGMENT = 100000;
+
+	private static final int MAX_SEGMENTS = 64;
+
+	private SegmentedSnapShot() {
+		// NO-OP
+	}
+
+	/**
+	 * Checks whether the given file is in the segmented layout.
+	 */
+	static boolean isSegmented(File file) throws IOException {
+		byte[] header = new byte[MAGIC.length];
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			in.readFully(header);
+		} catch (EOFException e) {
+			return false;
+		}
+		return Arrays.equals(header, MAGIC);
+	}
+
+	/**
+	 * Reads the file, in either layout, into a new ontology of the given manager. The axioms
+	 * loaded are reported to the current operation handle, if any; when the operation is
+	 * cancelled the reading stops between two segments and the new ontology is removed again.
+	 */
+	static OWLOntology read(OWLOntologyManager manager, File file) throws IOException, OWLOntologyCreationException {
+		OWLOntology ontology = manager.createOntology();
+		try {
+			if (isSegmented(file)) {
+				readSegments(manager, ontology, file);
+			}
+			else {
+				try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+					readDocument(in, ontology, manager.getOWLDataFactory());
+				}
+				OperationHandle.current().ifPresent(h -> h.addAxiomsLoaded(ontology.getAxiomCount()));
+			}
+		} catch (IOException | RuntimeException e) {
+			manager.removeOntology(ontology);
+			throw e;
+		}
+		return ontology;
+	}
+
+	private static void readSegments(OWLOntologyManager manager, OWLOntology ontology, File file)
+			throws IOException, OWLOntologyCreationException {
+		long startTime = System.currentTimeMillis();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+			byte[] header = new byte[MAGIC.length];
+			in.readFully(header);
+			if (!Arrays.equals(header, MAGIC)) {
+				throw new IOException("Not a segmented snapshot: " + file);
+			}
+			int segmentCount = in.readInt();
+			List<ForkJoinTask<OWLOntology>> tasks = new ArrayList<>(segmentCount);
+			try {
+				for (int i = 0; i < segmentCount; i++) {
+					long offset = in.readLong();
+					long length = in.readLong();
+					// decoded into a scratch ontology, the target is only changed on the calling thread
+					OWLOntology target = OWLManager.createOWLOntologyManager().createOntology();
+					tasks.add(ForkJoinPool.commonPool().submit(() -> {
+						readSegment(channel, offset, length, target, manager.getOWLDataFactory());
+						return target;
+					}));
+				}
+				Optional<OperationHandle> handle = OperationHandle.current();
+				for (int i = 0; i < segmentCount; i++) {
+					handle.ifPresent(OperationHandle::checkCancelled);
+					OWLOntology segmentOntology = join(tasks.get(i));
+					tasks.set(i, null);
+					handle.ifPresent(h -> h.addAxiomsLoaded(segmentOntology.getAxiomCount()));
+					if (i == 0) {
+						copyHeader(manager, segmentOntology, ontology);
+					}
+					manager.addAxioms(ontology, segmentOntology.getAxioms());
+					segmentOntology.getOWLOntologyManager().removeOntology(segmentOntology);
+				}
+			} catch (IOException | RuntimeException e) {
+				cancel(tasks);
+				throw e;
+			}
+			logger.info(String.format("Loaded %d segment(s) in %d ms", segmentCount,
+					System.currentTimeMillis() - startTime));
+		}
+	}
+
+	/*
+	 * Cancels the segments that are not decoded yet, they are not needed any more, and waits for
+	 * the ones being decoded, so that the file is no longer read once the channel is closed.
+	 */
+	private static void cancel(List<ForkJoinTask<OWLOntology>> tasks) {
+		for (ForkJoinTask<OWLOntology> task : tasks) {
+			if (task != null) {
+				task.cancel(false);
+			}
+		}
+		for (ForkJoinTask<OWLOntology> task : tasks) {
+			if (task != null) {
+				task.quietlyJoin();
+			}
+		}
+		tasks.clear();
+	}
+
+	/*
+	 * Copies the ontology ID, the imports and the ontology annotations held by the first segment.
+	 */
+	private static void copyHeader(OWLOntologyManager manager, OWLOntology segment, OWLOntology ontology) {
+		List<OWLOntologyChange> changes = new ArrayList<>();
+		if (!segment.getOntologyID().isAnonymous()) {
+			changes.add(new SetOntologyID(ontology, segment.getOntologyID()));
+		}
+		for (OWLImportsDeclaration importDecl : segment.getImportsDeclarations()) {
+			changes.add(new AddImport(ontology, importDecl));
+		}
+		for (OWLAnnotation annotation : segment.getAnnotations()) {
+			changes.add(new AddOntologyAnnotation(ontology, annotation));
+		}
+		manager.applyChanges(changes);
+	}
+
+	private static OWLOntology join(ForkJoinTask<OWLOntology> task) throws IOException {
+		try {
+			return task.join();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/*
+	 * Maps the segment only while it is decoded, the mapping is dropped with the task.
+	 */
+	private static void readSegment(FileChannel channel, long offset, long length, OWLOntology ontology,
+			OWLDataFactory dataFactory) {
+		MappedByteBuffer segment;
+		try {
+			segment = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		readDocument(new ByteBufferInputStream(segment), ontology, dataFactory);
+	}
+
+	private static void readDocument(InputStream in, OWLOntology ontology, OWLDataFactory dataFactory) {
+		try {
+			new BinaryOWLOntologyDocumentSerializer().read(in, new BinaryOWLOntologyBuildingHandler(ontology),
+					dataFactory);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the ontology to the file in the segmented layout.
+	 */
+	static void write(OWLOntology ontology, File file) throws IOException {
+		write(Contents.of(ontology), file);
+	}
+
+	/**
+	 * Writes the copied contents of an ontology to the file in the segmented layout.
+	 */
+	static void write(Contents contents, File file) throws IOException {
+		List<OWLAxiom> axioms = contents.axioms;
+		int segmentCount = Math.max(1, Math.min(MAX_SEGMENTS,
+				(axioms.size() + AXIOMS_PER_SEGMENT - 1) / AXIOMS_PER_SEGMENT));
+		int segmentSize = (axioms.size() + segmentCount - 1) / Math.max(1, segmentCount);
+		long[] offsets = new long[segmentCount];
+		long[] lengths = new long[segmentCount];
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long position = MAGIC.length + 4 + segmentCount * 16L; // segments start after the table
+			for (int i = 0; i < segmentCount; i++) {
+				List<OWLAxiom> slice = axioms.subList(Math.min(axioms.size(), i * segmentSize),
+						Math.min(axioms.size(), (i + 1) * segmentSize));
+				channel.position(position);
+				OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+				writeSegment(contents, slice, i == 0, new DataOutputStream(out));
+				out.flush();
+				offsets[i] = position;
+				lengths[i] = channel.position() - position;
+				position = channel.position();
+			}
+			channel.position(0);
+			DataOutputStream table = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			table.write(MAGIC);
+			table.writeInt(segmentCount);
+			for (int i = 0; i < segmentCount; i++) {
+				table.writeLong(offsets[i]);
+				table.writeLong(lengths[i]);
+			}
+			table.flush();
+		}
+	}
+
+	private static void writeSegment(Contents contents, List<OWLAxiom> axioms, boolean withHeader,
+			DataOutputStream out) throws IOException {
+		OWLOntologyManager segmentManager = OWLManager.createOWLOntologyManager();
+		try {
+			OWLOntology segment = withHeader
+					? segmentManager.createOntology(contents.ontologyId)
+					: segmentManager.createOntology();
+			List<OWLOntologyChange> changes = new ArrayList<>();
+			if (withHeader) {
+				for (OWLImportsDeclaration importDecl : contents.imports) {
+					changes.add(new AddImport(segment, importDecl));
+				}
+				for (OWLAnnotation annotation : contents.annotations) {
+					changes.add(new AddOntologyAnnotation(segment, annotation));
+				}
+			}
+			for (OWLAxiom axiom : axioms) {
+				changes.add(new AddAxiom(segment, axiom));
+			}
+			segmentManager.applyChanges(changes);
+			new BinaryOWLOntologyDocumentSerializer().write(new OWLOntologyWrapper(segment), out);
+		} catch (OWLOntologyCreationException e) {
+			throw new IOException("Unable to create the snapshot segment", e);
+		}
+	}
+
+	/**
+	 * What a snapshot holds of an ontology: its ID, imports, ontology annotations and axioms. The
+	 * copy is taken on the thread that owns the ontology and can then be written out on another
+	 * one while the ontology goes on changing.
+	 */
+	static final class Contents {
+
+		private final OWLOntologyID ontologyId;
+		private final List<OWLImportsDeclaration> imports;
+		private final List<OWLAnnotation> annotations;
+		private final List<OWLAxiom> axioms;
+
+		private Contents(OWLOntology ontology) {
+			ontologyId = ontology.getOntologyID();
+			imports = new ArrayList<>(ontology.getImportsDeclarations());
+			annotations = new ArrayList<>(ontology.getAnnotations());
+			axioms = new ArrayList<>(ontology.getAxioms());
+		}
+
+		static Contents of(OWLOntology ontology) {
+			return new Contents(ontology);
+		}
+	}
+
+	/*
+	 * Reads a (memory-mapped) buffer as a stream, without copying it to the heap.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(bytes, off, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
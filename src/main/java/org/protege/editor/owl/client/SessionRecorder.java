@@ -2,13 +2,21 @@ package org.protege.editor.owl.client;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.SwingUtilities;
 
 import org.protege.editor.owl.OWLEditorKit;
-import org.protege.editor.owl.model.ChangeListMinimizer;
+import org.protege.editor.owl.client.event.CoalescedUndoManagerListener;
+import org.protege.editor.owl.client.util.CoalescingDispatcher;
 import org.protege.editor.owl.model.OWLEditorKitHook;
 import org.protege.editor.owl.model.event.EventType;
 import org.protege.editor.owl.model.event.OWLModelManagerChangeEvent;
@@ -47,6 +55,10 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 	private OWLOntologyManager manager;
 
 	private boolean enabled = true;
+
+	// The threads that apply changes which are not local edits, e.g., those from the server. Only the
+	// changes they apply are left out, edits made on other threads at the same time are still recorded
+	private final Set<Thread> mutedThreads = ConcurrentHashMap.newKeySet();
 	
 	// There are times, .eg. when running lengthy batch processes, that we don't want the
 	// session recorder to fire events on each edit. This enables programs to supress them
@@ -78,8 +90,16 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 	 */
 	private Stack<List<OWLOntologyChange>> redoStack;
 
+	// The net effect of the changes on the undo stack of each ontology, maintained as changes are logged
+	private Map<OWLOntologyID, NetChangeSet> netChangeStash = new HashMap<>();
+
+	private NetChangeSet netChanges;
+
 	private List<UndoManagerListener> listeners;
 
+	// Merges bursts of state changes and notifies the listeners on the event dispatch thread
+	private CoalescingDispatcher dispatcher;
+
 	private OWLModelManagerListener changeActiveProject = new OWLModelManagerListener() {
 		@Override
 		public void handleChange(OWLModelManagerChangeEvent event) {
@@ -97,6 +117,7 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 				List<Stack<List<OWLOntologyChange>>> ont_stacks = stash.get(ontologyId);
 				undoStack = ont_stacks.get(0);
 				redoStack = ont_stacks.get(1);	
+				netChanges = netChangeStash.computeIfAbsent(ontologyId, id -> new NetChangeSet());
 
 			}
 		}
@@ -112,7 +133,10 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 		getEditorKit().getOWLModelManager().setHistoryManager(this);
 		getEditorKit().getOWLModelManager().addListener(changeActiveProject);
 		this.manager = getEditorKit().getOWLModelManager().getOWLOntologyManager();
-		listeners = new ArrayList<>();
+		listeners = new CopyOnWriteArrayList<>();
+		dispatcher = new CoalescingDispatcher("Session Recorder Notifications",
+				ClientPreferences.getInstance().getListenerCoalescingWindow(),
+				SwingUtilities::invokeLater, (eventCount, changeCount) -> notifyListeners(changeCount));
 	}
 
 	public void reset() {
@@ -123,6 +147,8 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 		reset_stack.add(undoStack);
 		reset_stack.add(redoStack);
 		stash.put(ontologyId, reset_stack);
+		netChanges = new NetChangeSet();
+		netChangeStash.put(ontologyId, netChanges);
 
 		//listeners = new ArrayList<>();
 		typeOfChangeInProgress = ChangeType.NORMAL;
@@ -140,7 +166,7 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 
 
 	public void logChanges(List<? extends OWLOntologyChange> changes) {
-		if (enabled) {
+		if (enabled && !mutedThreads.contains(Thread.currentThread())) {
 			switch (typeOfChangeInProgress) {
 			case NORMAL:
 				// Clear the redo stack, because we can
@@ -161,7 +187,9 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 				redoStack.push(reverseChanges(changes));
 				break;
 			}
-			fireStateChanged();
+			// Undone changes are the reverse of the ones on the undo stack and cancel them out
+			netChanges.addAll(changes);
+			fireStateChanged(changes.size());
 		}
 	}
 
@@ -226,13 +254,38 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 
 
 	public void fireStateChanged() {
+		fireStateChanged(0);
+	}
+
+	/*
+	 * State changes are not delivered right away: the dispatcher merges those that come in
+	 * within its window and notifies the listeners once, on the event dispatch thread.
+	 */
+	private void fireStateChanged(int changeCount) {
 		if (!quietMode) {
-			for (UndoManagerListener listener : new ArrayList<>(listeners)) {
+			dispatcher.signal(changeCount);
+		}
+	}
+
+	private void notifyListeners(int changeCount) {
+		for (UndoManagerListener listener : listeners) {
+			if (listener instanceof CoalescedUndoManagerListener) {
+				((CoalescedUndoManagerListener) listener).stateChanged(this, changeCount);
+			}
+			else {
 				listener.stateChanged(this);
 			}
 		}
 	}
 
+	/**
+	 * Gets the dispatcher of the state change notifications, e.g., to adjust its window or to
+	 * read how many notifications it merged.
+	 */
+	public CoalescingDispatcher getDispatcher() {
+		return dispatcher;
+	}
+
 	private List<OWLOntologyChange> reverseChanges(List<? extends OWLOntologyChange> changes) {
 		List<OWLOntologyChange> reversedChanges = new ArrayList<>();
 		for (OWLOntologyChange change : changes) {
@@ -249,6 +302,7 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 	@Override
 	public void dispose() throws Exception {
 		getEditorKit().getModelManager().removeListener(changeActiveProject);
+		dispatcher.dispose();
 	}
 
 	public void stopRecording() {
@@ -262,14 +316,78 @@ public class SessionRecorder extends OWLEditorKitHook implements HistoryManager
 		enabled = true;
 	}
 
+	/**
+	 * Stops recording the changes applied by the calling thread, until it calls
+	 * {@link #startRecordingOnThisThread()}. Unlike {@link #stopRecording()}, the changes applied
+	 * by other threads meanwhile, e.g., the user's edits on the event dispatch thread, are still
+	 * recorded.
+	 */
+	public void stopRecordingOnThisThread() {
+		mutedThreads.add(Thread.currentThread());
+	}
+
+	/**
+	 * Starts recording the changes applied by the calling thread again.
+	 */
+	public void startRecordingOnThisThread() {
+		mutedThreads.remove(Thread.currentThread());
+	}
+
+	/**
+	 * Gets the net uncommitted changes to the active ontology. The list is read-only and is
+	 * shared until the next change, so it can be handed to a commit as it is.
+	 */
 	public List<OWLOntologyChange> getUncommittedChanges() {
+		return netChanges.getChanges();
+	}
 
-		// Flatten the stack
-		List<OWLOntologyChange> toReturn = new ArrayList<>();
-		for (List<OWLOntologyChange> changes : undoStack) {
-			toReturn.addAll(changes);
+	/**
+	 * Gets the entries of the undo history of the given ontology, to be handed back to
+	 * {@link #rebaseOnto(OWLOntologyID, List, Set)} once their changes are committed. To be called on
+	 * the event dispatch thread.
+	 */
+	public Set<List<OWLOntologyChange>> getUndoEntries(OWLOntologyID ontologyId) {
+		Set<List<OWLOntologyChange>> entries = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<Stack<List<OWLOntologyChange>>> ontologyStacks = stash.get(ontologyId);
+		if (ontologyStacks != null) {
+			entries.addAll(ontologyStacks.get(0));
+		}
+		return entries;
+	}
+
+	/**
+	 * Takes the given changes, committed in the background, out of the uncommitted changes of the
+	 * given ontology. Edits made while the commit was on its way remain uncommitted. The given
+	 * entries of the undo history, those taken when the commit started, are dropped, so that the
+	 * undo history does not grow from one commit to the next; the entries added since can still be
+	 * undone. To be called on the event dispatch thread.
+	 */
+	public void rebaseOnto(OWLOntologyID ontologyId, List<OWLOntologyChange> committedChanges,
+			Set<List<OWLOntologyChange>> committedUndoEntries) {
+		NetChangeSet ontologyChanges = netChangeStash.get(ontologyId);
+		if (ontologyChanges != null) {
+			ontologyChanges.rebaseOnto(committedChanges);
+		}
+		List<Stack<List<OWLOntologyChange>>> ontologyStacks = stash.get(ontologyId);
+		if (ontologyStacks != null) {
+			ontologyStacks.get(0).removeIf(committedUndoEntries::contains);
 		}
-		return new ChangeListMinimizer().getMinimisedChanges(toReturn);
+		fireStateChanged();
+	}
+
+	/**
+	 * Checks whether there are uncommitted changes to the active ontology, in constant time.
+	 */
+	public boolean hasUncommittedChanges() {
+		return netChanges != null && !netChanges.isEmpty();
+	}
+
+	/**
+	 * Checks whether there are local edits to the given ontology that have not been committed yet.
+	 */
+	public boolean hasUncommittedChanges(OWLOntologyID ontologyId) {
+		NetChangeSet ontologyChanges = netChangeStash.get(ontologyId);
+		return ontologyChanges != null && !ontologyChanges.isEmpty();
 	}
 
 	@Override
@@ -0,0 +1,196 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import org.protege.editor.owl.server.versioning.api.ChangeHistory;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses how a local copy is brought up to a target revision: by replaying the changes of
+ * every revision on the way, or by jumping to a materialized state and applying only what is
+ * left.
+ *
+ * Opening a project can jump to the local head checkpoint instead of replaying the history on
+ * top of the snapshot. The two are compared by their estimated cost in bytes of serialized data
+ * to be processed: the snapshot plus the changes of the revisions between its base and the
+ * checkpoint, from the number of changes per revision seen so far, against the checkpoint.
+ *
+ * Catching up with many revisions can apply their net effect, i.e., what a snapshot at the new
+ * head would differ by, instead of every change. Both ways take time in proportion to the number
+ * of changes, so that only decides by the part of the changes expected to cancel out, as seen
+ * so far: consolidating pays off once it is above {@link #CONSOLIDATION_THRESHOLD}.
+ *
+ * Each decision and the time it took to carry out are logged, so that the factors below can be
+ * tuned.
+ */
+public class SyncPlanner {
+
+	private static final Logger logger = LoggerFactory.getLogger(SyncPlanner.class);
+
+	private static final long DEFAULT_CHANGES_PER_REVISION = 20;
+
+	private static final long BYTES_PER_CHANGE = 150;
+
+	/*
+	 * How much more a replayed change costs than loading it as part of a snapshot
+	 */
+	private static final double REPLAY_FACTOR = 3.0;
+
+	/*
+	 * How much more a change costs when applied to an ontology that is open in the editor,
+	 * whose listeners, search index and conflict detection all see it
+	 */
+	private static final double LIVE_REPLAY_FACTOR = 10.0;
+
+	/*
+	 * How much a change costs to consolidate, i.e., to look up and record its net effect, off the
+	 * event dispatch thread
+	 */
+	private static final double CONSOLIDATE_FACTOR = 0.5;
+
+	/**
+	 * The part of the changes that has to cancel out for consolidating to pay off. Consolidating
+	 * costs CONSOLIDATE_FACTOR per change and saves LIVE_REPLAY_FACTOR per change that cancels out.
+	 */
+	static final double CONSOLIDATION_THRESHOLD = CONSOLIDATE_FACTOR / LIVE_REPLAY_FACTOR;
+
+	/*
+	 * The part of the changes expected to cancel out when consolidated, until observed
+	 */
+	private static final double DEFAULT_CANCELLATION_RATIO = 0.1;
+
+	private static SyncPlanner instance;
+
+	private final AtomicLong observedRevisions = new AtomicLong();
+	private final AtomicLong observedChanges = new AtomicLong();
+	private final AtomicLong consolidatedChanges = new AtomicLong();
+	private final AtomicLong cancelledChanges = new AtomicLong();
+
+	public static synchronized SyncPlanner getInstance() {
+		if (instance == null) {
+			instance = new SyncPlanner();
+		}
+		return instance;
+	}
+
+	SyncPlanner() {
+	}
+
+	/**
+	 * Takes the revisions of the given history into account for the next estimates.
+	 */
+	public void observe(ChangeHistory changeHistory) {
+		long changes = 0;
+		for (List<OWLOntologyChange> revisionChanges : changeHistory.getRevisions().values()) {
+			changes += revisionChanges.size();
+		}
+		observedRevisions.addAndGet(changeHistory.getRevisions().size());
+		observedChanges.addAndGet(changes);
+	}
+
+	public long estimateChangesPerRevision() {
+		long revisions = observedRevisions.get();
+		return revisions == 0 ? DEFAULT_CHANGES_PER_REVISION : Math.max(1, observedChanges.get() / revisions);
+	}
+
+	/**
+	 * Plans how to open a project that has a head checkpoint: replay the history from the
+	 * snapshot at the base revision up to the checkpoint, or jump to the checkpoint.
+	 */
+	public Decision planOpen(ProjectId projectId, DocumentRevision baseRevision, DocumentRevision checkpointRevision,
+			long checkpointBytes, long snapshotBytes) {
+		long revisions = Math.max(0, DocumentRevision.distance(baseRevision, checkpointRevision));
+		long replayCost = snapshotBytes
+			+ (long) (revisions * estimateChangesPerRevision() * BYTES_PER_CHANGE * REPLAY_FACTOR);
+		return decide("Open " + projectId, replayCost <= checkpointBytes, String.format(
+			"%d revision(s) to the checkpoint, estimated replay cost %d KB, jump cost %d KB", revisions,
+			replayCost / 1024, checkpointBytes / 1024));
+	}
+
+	/**
+	 * Plans how to apply the given number of changes to an open ontology: replay every change,
+	 * or consolidate them into their net effect first, when the part of the changes seen to
+	 * cancel out so far is above the {@link #CONSOLIDATION_THRESHOLD}. Whichever is chosen,
+	 * {@link #consolidate} or {@link #measure} is to be called with the changes, so that the
+	 * cancellation ratio keeps being observed on both paths.
+	 */
+	public Decision planCatchUp(ProjectId projectId, int changeCount) {
+		double cancellationRatio = estimateCancellationRatio();
+		return decide("Catch up " + projectId, cancellationRatio <= CONSOLIDATION_THRESHOLD, String.format(
+			"%d change(s), %.1f%% expected to cancel out", changeCount, cancellationRatio * 100));
+	}
+
+	/**
+	 * Consolidates the changes, in order, into their net effect, e.g., an axiom that is added
+	 * and removed again drops out.
+	 */
+	public List<OWLOntologyChange> consolidate(List<OWLOntologyChange> changes) {
+		List<OWLOntologyChange> consolidated = getNetChanges(changes);
+		logger.info(String.format("Consolidated %d change(s) into %d", changes.size(), consolidated.size()));
+		return consolidated;
+	}
+
+	/**
+	 * Takes the part of the changes that would cancel out into account for the next estimates,
+	 * without consolidating them. To be called, off the event dispatch thread, with the changes
+	 * that are replayed; otherwise a low ratio once seen would never be revised.
+	 */
+	public void measure(List<OWLOntologyChange> changes) {
+		getNetChanges(changes);
+	}
+
+	private List<OWLOntologyChange> getNetChanges(List<OWLOntologyChange> changes) {
+		NetChangeSet netChanges = new NetChangeSet();
+		netChanges.addAll(changes);
+		List<OWLOntologyChange> consolidated = netChanges.getChanges();
+		consolidatedChanges.addAndGet(changes.size());
+		cancelledChanges.addAndGet(changes.size() - consolidated.size());
+		return consolidated;
+	}
+
+	double estimateCancellationRatio() {
+		long consolidated = consolidatedChanges.get();
+		return consolidated == 0 ? DEFAULT_CANCELLATION_RATIO : (double) cancelledChanges.get() / consolidated;
+	}
+
+	private static Decision decide(String subject, boolean replay, String estimate) {
+		Decision decision = new Decision(subject, replay);
+		logger.info(String.format("%s: %s, choosing %s", subject, estimate, decision.getChoice()));
+		return decision;
+	}
+
+	/**
+	 * A choice between replaying and jumping, timed from when it was made.
+	 */
+	public static class Decision {
+
+		private final String subject;
+		private final boolean replay;
+		private final long startTime = System.currentTimeMillis();
+
+		Decision(String subject, boolean replay) {
+			this.subject = subject;
+			this.replay = replay;
+		}
+
+		public boolean isReplay() {
+			return replay;
+		}
+
+		public String getChoice() {
+			return replay ? "replay" : "jump";
+		}
+
+		/**
+		 * Logs how long carrying out the decision took, to be set against the estimate.
+		 */
+		public void finished() {
+			logger.info(String.format("%s: %s took %d ms", subject, getChoice(), System.currentTimeMillis() - startTime));
+		}
+	}
+}
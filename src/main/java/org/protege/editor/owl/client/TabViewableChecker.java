@@ -15,6 +15,7 @@ import org.protege.editor.core.ui.workspace.WorkspaceTabPlugin;
 import org.protege.editor.owl.client.LocalHttpClient.UserType;
 import org.protege.editor.owl.client.api.Client;
 import org.protege.editor.owl.client.api.exception.ClientRequestException;
+import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
 
 import edu.stanford.protege.metaproject.api.Role;
 import edu.stanford.protege.metaproject.impl.RoleIdImpl;
@@ -109,6 +110,10 @@ public class TabViewableChecker implements TabViewable {
 		if (this.isWorkFlowModeler(clientSession.getActiveProject())) {
 			return true;
 		}
+		VersionedOWLOntology vont = clientSession.getActiveVersionOntology();
+		if (vont != null && clientSession.isCatchingUp(vont)) {
+			return true; // opened early, not at the server head yet
+		}
 		return false;
 	}
 
@@ -3,15 +3,18 @@ package org.protege.editor.owl.client.action;
 import org.protege.editor.core.ui.util.JOptionPaneEx;
 import org.protege.editor.owl.client.ClientSession;
 import org.protege.editor.owl.client.SessionRecorder;
+import org.protege.editor.owl.client.util.ClientScheduler;
+import org.protege.editor.owl.client.util.ClientScheduler.Lane;
 import org.protege.editor.owl.ui.action.ProtegeOWLAction;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
 
+import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -25,16 +28,6 @@ public abstract class AbstractClientAction extends ProtegeOWLAction {
 
     private static final long serialVersionUID = 8677318010907902600L;
 
-    private static ScheduledExecutorService executorService = Executors
-            .newSingleThreadScheduledExecutor(new ThreadFactory() {
-                @Override
-                public Thread newThread(Runnable r) {
-                    Thread th = new Thread(r, "Client-Server Communications");
-                    th.setDaemon(true);
-                    return th;
-                }
-            });
-
     @Override
     public void initialise() throws Exception {
         // NO-OP
@@ -53,23 +46,48 @@ public abstract class AbstractClientAction extends ProtegeOWLAction {
         return SessionRecorder.getInstance(getOWLEditorKit());
     }
 
+    /**
+     * Gets the scheduler lane the tasks of this action run on, the interactive one unless the
+     * action says otherwise.
+     */
+    protected Lane getLane() {
+        return Lane.INTERACTIVE;
+    }
+
+    /**
+     * Gets the lock to hold while applying changes to the open ontology or moving its head.
+     */
+    protected Lock getSyncLock() {
+        return ClientScheduler.getInstance().getSyncLock();
+    }
+
+    /**
+     * Applies changes that came from the server to the ontology, without recording them as local
+     * edits, and brings the search index up to date with them. To be called on the event dispatch
+     * thread, where the user's edits are applied too, e.g., from a task run with
+     * {@link org.protege.editor.owl.client.util.GuiUtils#invokeAndWait(Callable)}.
+     */
+    protected void applyRemoteChanges(OWLOntology ontology, List<OWLOntologyChange> changes) {
+        getClientSession().applyRemoteChanges(ontology, changes);
+    }
+
     protected Future<?> submit(Runnable task) {
-        return executorService.submit(task);
+        return ClientScheduler.getInstance().submit(getLane(), task);
     }
 
     protected ScheduledFuture<?> submit(Runnable task, long delay) {
-        return executorService.schedule(task, delay, TimeUnit.SECONDS);
+        return ClientScheduler.getInstance().schedule(getLane(), task, delay, TimeUnit.SECONDS);
     }
 
     protected ScheduledFuture<?> submitPeriodic(Runnable task, long period) {
-        return executorService.scheduleAtFixedRate(task, period, period, TimeUnit.SECONDS);
+        return ClientScheduler.getInstance().scheduleAtFixedRate(getLane(), task, period, TimeUnit.SECONDS);
     }
     protected Future<?> submit(Callable<?> task) {
-        return executorService.submit(task);
+        return ClientScheduler.getInstance().submit(getLane(), task);
     }
 
     protected ScheduledFuture<?> submit(Callable<?> task, long delay) {
-        return executorService.schedule(task, delay, TimeUnit.SECONDS);
+        return ClientScheduler.getInstance().schedule(getLane(), task, delay, TimeUnit.SECONDS);
     }
 
     protected void showErrorDialog(String title, String message, Throwable t) {
@@ -1,9 +1,10 @@
 package org.protege.editor.owl.client.action;
 
+import org.protege.editor.owl.client.ClientPreferences;
+import org.protege.editor.owl.client.LocalHttpClient;
 import org.protege.editor.owl.client.SessionRecorder;
 import org.protege.editor.owl.client.api.Client;
-import org.protege.editor.owl.client.api.exception.AuthorizationException;
-import org.protege.editor.owl.client.api.exception.ClientRequestException;
+import org.protege.editor.owl.client.api.OperationHandle;
 import org.protege.editor.owl.client.api.exception.LoginTimeoutException;
 import org.protege.editor.owl.client.api.exception.SynchronizationException;
 import org.protege.editor.owl.client.event.ClientSessionChangeEvent;
@@ -12,10 +13,13 @@ import org.protege.editor.owl.client.event.ClientSessionListener;
 import org.protege.editor.owl.client.event.CommitOperationEvent;
 import org.protege.editor.owl.client.ui.*;
 import org.protege.editor.owl.client.util.ClientUtils;
+import org.protege.editor.owl.client.util.ConflictDetector;
+import org.protege.editor.owl.client.util.GuiUtils;
 import org.protege.editor.owl.model.history.HistoryManager;
 import org.protege.editor.owl.model.history.UndoManagerListener;
 import org.protege.editor.owl.server.api.CommitBundle;
 import org.protege.editor.owl.server.policy.CommitBundleImpl;
+import org.protege.editor.owl.server.versioning.ChangeHistoryUtils;
 import org.protege.editor.owl.server.versioning.Commit;
 import org.protege.editor.owl.server.versioning.api.ChangeHistory;
 import org.protege.editor.owl.server.versioning.api.DocumentRevision;
@@ -23,17 +27,21 @@ import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
 import org.protege.editor.owl.ui.UIHelper;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
 
 import edu.stanford.protege.metaproject.api.AuthToken;
+import edu.stanford.protege.metaproject.api.ProjectId;
 
 /**
  * @author Josef Hardi <johardi@stanford.edu> <br>
@@ -44,20 +52,21 @@ public class CommitAction extends AbstractClientAction implements ClientSessionL
 
     private static final long serialVersionUID = 4601012273632698091L;
 
-    private Optional<VersionedOWLOntology> activeVersionOntology = Optional.empty();
+    private static final Logger logger = LoggerFactory.getLogger(CommitAction.class);
+
+    private static final long REBASE_BACKOFF = 500; // in milliseconds, doubled on each retry
 
-    private List<OWLOntologyChange> localChanges = new ArrayList<>();
+    private final ConflictDetector conflictDetector = new ConflictDetector();
+
+    private Optional<VersionedOWLOntology> activeVersionOntology = Optional.empty();
 
     private SessionRecorder sessionRecorder;
 
     private UndoManagerListener checkUncommittedChanges = new UndoManagerListener() {
         @Override
         public void stateChanged(HistoryManager source) {
-            OWLOntology activeOntology = getOWLEditorKit().getOWLModelManager().getActiveOntology();
             if (activeVersionOntology.isPresent()) {
-                ChangeHistory baseline = activeVersionOntology.get().getChangeHistory();
-                localChanges = ClientUtils.getUncommittedChanges(source, activeOntology, baseline);
-                setEnabled(!localChanges.isEmpty());
+                updateEnabled();
             }
         }
     };
@@ -89,6 +98,10 @@ public class CommitAction extends AbstractClientAction implements ClientSessionL
                 setEnabled(false);
             }
         }
+        else if (event.hasCategory(EventCategory.COMMIT_PENDING) || event.hasCategory(EventCategory.COMMIT_FINISHED)
+                || event.hasCategory(EventCategory.CATCHING_UP) || event.hasCategory(EventCategory.CAUGHT_UP)) {
+            updateEnabled();
+        }
     }
 
     @Override
@@ -103,76 +116,183 @@ public class CommitAction extends AbstractClientAction implements ClientSessionL
         }
     }
 
+    /*
+     * Queues the commit and returns right away, editing can go on while it is uploaded. The
+     * commit action stays disabled until the server has answered. Once the commit is accepted,
+     * the undo history it covers is dropped, as a reset of the session recorder would, but the
+     * edits made in the meantime stay uncommitted and can still be undone.
+     */
     private void performCommit(VersionedOWLOntology vont, String comment) {
-        try {
-            Optional<ChangeHistory> acceptedChanges = commit(vont.getHeadRevision(), localChanges, comment);
-            if (acceptedChanges.isPresent()) {
-                ChangeHistory changes = acceptedChanges.get();
-                vont.update(changes); // update the local ontology
-                setEnabled(false); // disable the commit action after the changes got committed successfully
-                sessionRecorder.reset();
-                getClientSession().fireCommitPerformedEvent(new CommitOperationEvent(
-                        changes.getHeadRevision(),
-                        changes.getMetadataForRevision(changes.getHeadRevision()),
-                        changes.getChangesForRevision(changes.getHeadRevision())));
-                showInfoDialog("Commit", "Commit success (uploaded as revision " + changes.getHeadRevision() + ")");
+        List<OWLOntologyChange> localChanges = ClientUtils.getUncommittedChanges(sessionRecorder,
+                vont.getOntology(), vont.getChangeHistory());
+        OWLOntologyID ontologyId = vont.getOntology().getOntologyID();
+        Set<List<OWLOntologyChange>> undoEntries = sessionRecorder.getUndoEntries(ontologyId);
+        Client activeClient = getClientSession().getActiveClient();
+        ProjectId projectId = getClientSession().getActiveProject();
+        getClientSession().setCommitPending(vont, true);
+        setEnabled(false);
+        OperationHandle handle = new OperationHandle("Commit");
+        submit(() -> {
+            Lock lock = getSyncLock();
+            try (OperationHandle.Scope scope = handle.attach()) {
+                lock.lockInterruptibly();
+                ChangeHistory changes;
+                try {
+                    handle.checkCancelled();
+                    changes = new DoCommit(vont, projectId, activeClient, comment, localChanges).call();
+                    // Moved forward here, before any update can apply changes again, so that the next
+                    // update starts from the accepted revision and does not see the committed changes
+                    // as conflicts
+                    DocumentRevision base = vont.getHeadRevision();
+                    GuiUtils.invokeAndWait(() -> {
+                        vont.update(changes);
+                        sessionRecorder.rebaseOnto(ontologyId, localChanges, undoEntries);
+                        return null;
+                    });
+                    if (activeClient instanceof LocalHttpClient) {
+                        // the committed changes were indexed as they were made
+                        ((LocalHttpClient) activeClient).recordIndexedRevision(projectId, base, vont.getHeadRevision());
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+                SwingUtilities.invokeLater(() -> commitAccepted(vont, changes));
             }
-        }
-        catch (InterruptedException e) {
-            showErrorDialog("Commit error", "Internal error: " + e.getMessage(), e);
-        }
+            catch (Exception e) {
+                boolean cancelled = handle.isCancelled();
+                SwingUtilities.invokeLater(() -> commitFailed(vont, comment, cancelled ? null : e));
+            }
+            finally {
+                handle.finish();
+            }
+        });
+        OperationProgressDialog.showWhenSlow(getOWLEditorKit().getWorkspace(), "Committing changes", handle);
     }
 
-    private Optional<ChangeHistory> commit(DocumentRevision revision,
-            List<OWLOntologyChange> localChanges, String comment) throws InterruptedException {
-        Optional<ChangeHistory> acceptedChanges = Optional.empty();
-        try {
-            Client activeClient = getClientSession().getActiveClient();
-            Future<?> task = submit(new DoCommit(revision, activeClient, comment, localChanges));
-            acceptedChanges = Optional.ofNullable((ChangeHistory) task.get());
+    private void commitAccepted(VersionedOWLOntology vont, ChangeHistory changes) {
+        getClientSession().setCommitPending(vont, false);
+        updateEnabled();
+        getClientSession().fireCommitPerformedEvent(new CommitOperationEvent(
+                changes.getHeadRevision(),
+                changes.getMetadataForRevision(changes.getHeadRevision()),
+                changes.getChangesForRevision(changes.getHeadRevision())));
+        showInfoDialog("Commit", "Commit success (uploaded as revision " + changes.getHeadRevision() + ")");
+    }
+
+    /*
+     * Ends a commit that was not accepted, because it failed or, without an error, because it
+     * was cancelled. Either way nothing changed locally and the changes are still uncommitted.
+     */
+    private void commitFailed(VersionedOWLOntology vont, String comment, Exception e) {
+        getClientSession().setCommitPending(vont, false);
+        updateEnabled();
+        if (e == null) {
+            showInfoDialog("Commit", "Commit cancelled, the changes are still uncommitted");
+            return;
         }
-        catch (ExecutionException e) {
-            Throwable t = e.getCause();
-            String originalMessage = t.getMessage();
-            if (t instanceof LoginTimeoutException) {
-                showErrorDialog("Commit error", originalMessage, t);
-                Optional<AuthToken> authToken = UserLoginPanel.showDialog(getOWLEditorKit(), getEditorKit().getWorkspace());
-                if (authToken.isPresent() && authToken.get().isAuthorized()) {
-                    recommit(comment);
-                }
-            }
-            else {
-                showErrorDialog("Commit error", originalMessage, t);
+        String originalMessage = e.getMessage();
+        if (e instanceof LoginTimeoutException) {
+            showErrorDialog("Commit error", originalMessage, e);
+            Optional<AuthToken> authToken = UserLoginPanel.showDialog(getOWLEditorKit(), getEditorKit().getWorkspace());
+            if (authToken.isPresent() && authToken.get().isAuthorized()) {
+                recommit(comment);
             }
         }
-        return acceptedChanges;
+        else {
+            showErrorDialog("Commit error", originalMessage, e);
+        }
     }
 
     private void recommit(String comment) {
         performCommit(activeVersionOntology.get(), comment);
     }
 
+    private void updateEnabled() {
+        setEnabled(activeVersionOntology.isPresent()
+                && !getClientSession().hasPendingCommit(activeVersionOntology.get())
+                && !getClientSession().isCatchingUp(activeVersionOntology.get())
+                && sessionRecorder.hasUncommittedChanges());
+    }
+
     private class DoCommit implements Callable<ChangeHistory> {
 
-        private DocumentRevision commitBaseRevision;
+        private VersionedOWLOntology vont;
+        private ProjectId projectId;
         private Client author;
         private String comment;
         private List<OWLOntologyChange> changes;
 
-        public DoCommit(DocumentRevision commitBaseRevision, Client author, String comment,
+        public DoCommit(VersionedOWLOntology vont, ProjectId projectId, Client author, String comment,
                 List<OWLOntologyChange> changes) {
-            this.commitBaseRevision = commitBaseRevision;
+            this.vont = vont;
+            this.projectId = projectId;
             this.author = author;
             this.comment = comment;
             this.changes = changes;
         }
 
         @Override
-        public ChangeHistory call() throws AuthorizationException, LoginTimeoutException,
-                SynchronizationException, ClientRequestException {
+        public ChangeHistory call() throws Exception {
             Commit commit = ClientUtils.createCommit(author, comment, changes);
-            CommitBundle commitBundle = new CommitBundleImpl(commitBaseRevision, commit);
-            return author.commit(getClientSession().getActiveProject(), commitBundle);
+            ClientPreferences prefs = ClientPreferences.getInstance();
+            int retries = prefs.isAutoRebaseCommits() ? prefs.getAutoRebaseMaxRetries() : 0;
+            for (int attempt = 0; ; attempt++) {
+                CommitBundle commitBundle = new CommitBundleImpl(vont.getHeadRevision(), commit);
+                try {
+                    return author.commit(projectId, commitBundle);
+                }
+                catch (SynchronizationException e) {
+                    // rejected, nothing was committed and the commit can be cancelled again
+                    OperationHandle.current().ifPresent(OperationHandle::enableCancel);
+                    if (attempt >= retries || !(author instanceof LocalHttpClient)) {
+                        throw e;
+                    }
+                    backOff(attempt);
+                    OperationHandle.current().ifPresent(OperationHandle::checkCancelled);
+                    rebase((LocalHttpClient) author, projectId);
+                }
+            }
+        }
+
+        /*
+         * Brings the local copy up to the server head so that the same commit can be sent again
+         * on top of it. Fails if the incoming changes touch any uncommitted change: those being
+         * committed as well as the edits made since the commit was taken. The check and the apply
+         * run in one go on the event dispatch thread, so that no edit can be made in between.
+         */
+        private void rebase(LocalHttpClient client, ProjectId projectId) throws Exception {
+            Optional<ChangeHistory> latestChanges = client.getChangesSince(vont, projectId);
+            if (!latestChanges.isPresent()) {
+                return;
+            }
+            OWLOntology ontology = vont.getOntology();
+            List<OWLOntologyChange> remoteChanges = ChangeHistoryUtils.getOntologyChanges(latestChanges.get(), ontology);
+            DocumentRevision base = vont.getHeadRevision();
+            logger.info(String.format("Rebasing commit onto %d new revision(s)",
+                    DocumentRevision.distance(base, latestChanges.get().getHeadRevision())));
+            GuiUtils.invokeAndWait(() -> {
+                List<OWLOntologyChange> localChanges = ClientUtils.getUncommittedChanges(getSessionRecorder(),
+                        ontology, vont.getChangeHistory());
+                if (!conflictDetector.getConflicts(localChanges, remoteChanges).isEmpty()) {
+                    throw new SynchronizationException("Conflict was detected while rebasing the commit onto the "
+                            + "latest changes from the server, please update and commit again");
+                }
+                applyRemoteChanges(ontology, remoteChanges);
+                vont.update(latestChanges.get());
+                return null;
+            });
+            ClientUtils.loadMissingImports(ontology, ontology.getOWLOntologyManager());
+            client.recordIndexedRevision(projectId, base, vont.getHeadRevision());
+        }
+
+        /*
+         * Waits before the next attempt, exponentially longer each time and randomized so that
+         * clients that collided do not retry in lockstep.
+         */
+        private void backOff(int attempt) throws InterruptedException {
+            long delay = (long) (REBASE_BACKOFF * (1L << attempt) * (0.5 + ThreadLocalRandom.current().nextDouble()));
+            Thread.sleep(delay);
         }
     }
 }
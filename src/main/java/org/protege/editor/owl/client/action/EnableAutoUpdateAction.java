@@ -3,12 +3,11 @@ package org.protege.editor.owl.client.action;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
 
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenuItem;
@@ -16,31 +15,30 @@ import javax.swing.JMenuItem;
 import edu.stanford.protege.metaproject.api.ProjectId;
 import uk.ac.manchester.cs.owl.owlapi.OWLOntologyManagerImpl;
 
+import org.protege.editor.owl.client.HeadWatcher;
 import org.protege.editor.owl.client.LocalHttpClient;
+import org.protege.editor.owl.client.SyncPlanner;
 import org.protege.editor.owl.client.api.exception.ServiceUnavailableException;
 import org.protege.editor.owl.client.api.exception.SynchronizationException;
 import org.protege.editor.owl.client.event.ClientSessionChangeEvent;
 import org.protege.editor.owl.client.event.ClientSessionChangeEvent.EventCategory;
 import org.protege.editor.owl.client.event.ClientSessionListener;
+import org.protege.editor.owl.client.util.ClientScheduler.Lane;
 import org.protege.editor.owl.client.util.ClientUtils;
+import org.protege.editor.owl.client.util.ConflictDetector;
+import org.protege.editor.owl.client.util.GuiUtils;
 import org.protege.editor.owl.model.OWLModelManager;
 import org.protege.editor.owl.model.OWLModelManagerImpl;
 import org.protege.editor.owl.model.event.EventType;
 import org.protege.editor.owl.model.event.OWLModelManagerChangeEvent;
 import org.protege.editor.owl.model.event.OWLModelManagerListener;
 import org.protege.editor.owl.server.versioning.ChangeHistoryUtils;
-import org.protege.editor.owl.server.versioning.CollectingChangeVisitor;
 import org.protege.editor.owl.server.versioning.api.ChangeHistory;
 import org.protege.editor.owl.server.versioning.api.DocumentRevision;
 import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
 import org.semanticweb.owlapi.model.AddImport;
-import org.semanticweb.owlapi.model.AnnotationChange;
-import org.semanticweb.owlapi.model.ImportChange;
 import org.semanticweb.owlapi.model.MissingImportHandlingStrategy;
 import org.semanticweb.owlapi.model.MissingOntologyHeaderStrategy;
-import org.semanticweb.owlapi.model.OWLAnnotation;
-import org.semanticweb.owlapi.model.OWLAxiom;
-import org.semanticweb.owlapi.model.OWLAxiomChange;
 import org.semanticweb.owlapi.model.OWLImportsDeclaration;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
@@ -63,7 +61,10 @@ public class EnableAutoUpdateAction extends AbstractClientAction implements Clie
 
     private Optional<VersionedOWLOntology> activeVersionOntology = Optional.empty();
 
+    private final ConflictDetector conflictDetector = new ConflictDetector(); // keeps its local index between ticks
+
     private ScheduledFuture<?> autoUpdate;
+    private HeadWatcher headWatcher;
     private JCheckBoxMenuItem checkBoxMenuItem;
 
     private OWLModelManagerListener pauseListener = new OWLModelManagerListener() {
@@ -108,6 +109,11 @@ public class EnableAutoUpdateAction extends AbstractClientAction implements Clie
         }
     }
 
+    @Override
+    protected Lane getLane() {
+        return Lane.BACKGROUND;
+    }
+
     public void setMenuItem(JMenuItem menu) {
         checkBoxMenuItem = (JCheckBoxMenuItem) menu;
         checkBoxMenuItem.setSelected(true);
@@ -125,11 +131,31 @@ public class EnableAutoUpdateAction extends AbstractClientAction implements Clie
     			if (int_s != null) {
     				interval = Long.parseLong(int_s);    			
     			}
-    			autoUpdate = submitPeriodic(new AutoUpdate(getOWLModelManager(), vont), interval);
+    			final long pollInterval = interval;
+    			AutoUpdate task = new AutoUpdate(getOWLModelManager(), vont);
+    			LocalHttpClient client = (LocalHttpClient) getClientSession().getActiveClient();
+    			if (client.isHeadWatchSupported()) {
+    				// pull new revisions as soon as the server reports them, poll only if it cannot
+    				synchronized (this) {
+    					headWatcher = new HeadWatcher(client, vont, getClientSession().getActiveProject(),
+    							() -> submit(task), () -> startPolling(task, pollInterval));
+    					submit(task); // catch up with the revisions committed while auto-update was off
+    					headWatcher.start();
+    				}
+    			}
+    			else {
+    				startPolling(task, pollInterval);
+    			}
     		}
     	}
     }
 
+    private synchronized void startPolling(AutoUpdate task, long interval) {
+        if (autoUpdate == null) {
+            autoUpdate = submitPeriodic(task, interval);
+        }
+    }
+
     @Override
     public void actionPerformed(ActionEvent event) {
         killAutoUpdate();
@@ -137,7 +163,11 @@ public class EnableAutoUpdateAction extends AbstractClientAction implements Clie
         
     }
 
-    private void killAutoUpdate() {
+    private synchronized void killAutoUpdate() {
+        if (headWatcher != null) {
+            headWatcher.stop();
+            headWatcher = null;
+        }
         if (autoUpdate != null) {
             autoUpdate.cancel(false);
             autoUpdate = null;
@@ -169,119 +199,94 @@ public class EnableAutoUpdateAction extends AbstractClientAction implements Clie
     			if (modMan.getExplanationManager().getIsRunning()) {
     				return;
     			}
+    			if (getClientSession().isCatchingUp(vont)) {
+    				return; // the revisions are on their way already
+    			}
     			log.info("Checking for updates");
-    			if (!isUpdated()) {
-    				List<OWLOntologyChange> localChanges = getLatestChangesFromClient();
-    				ChangeHistory remoteChangeHistory = getLatestChangesFromServer();
-                    List<OWLOntologyChange> remoteChanges = ChangeHistoryUtils.getOntologyChanges(remoteChangeHistory, ontology);
-    				List<OWLOntologyChange> conflictChanges = getConflicts(localChanges, remoteChanges);
-    				if (conflictChanges.isEmpty()) {
-    					performUpdate(remoteChanges);
-    					vont.update(remoteChangeHistory);
+    			DocumentRevision base = vont.getHeadRevision();
+    			Optional<ChangeHistory> latestChanges = getLatestChangesFromServer();
+    			if (latestChanges.isPresent()) {
+    				Lock lock = getSyncLock();
+    				lock.lockInterruptibly();
+    				try {
+    					if (!vont.getHeadRevision().sameAs(base)) {
+    						return; // moved by a commit during the download, the next tick starts from there
+    					}
+    					ChangeHistory remoteChangeHistory = latestChanges.get();
+    					List<OWLOntologyChange> remoteChanges = ChangeHistoryUtils.getOntologyChanges(remoteChangeHistory, ontology);
+    					// after a long suspend many of the changes may cancel out, and applying
+    					// only their net effect spares the editor the rest
+    					SyncPlanner planner = SyncPlanner.getInstance();
+    					planner.observe(remoteChangeHistory);
+    					SyncPlanner.Decision plan = planner.planCatchUp(getClientSession().getActiveProject(),
+    							remoteChanges.size());
+    					if (!plan.isReplay()) {
+    						remoteChanges = planner.consolidate(remoteChanges);
+    					}
+    					else {
+    						planner.measure(remoteChanges);
+    					}
+    					performUpdate(remoteChangeHistory, remoteChanges);
+    					LocalHttpClient.current_user().recordIndexedRevision(getClientSession().getActiveProject(),
+    							base, vont.getHeadRevision());
+    					plan.finished();
     				}
-    				else {
-    					throw new SynchronizationException("Conflict was detected and unable to merge changes from the server");
+    				finally {
+    					lock.unlock();
     				}
     			}
     		}
     		catch (SynchronizationException udae) {
-    			autoUpdate.cancel(false);
-    			autoUpdate = null;
+    			killAutoUpdate();
     			checkBoxMenuItem.setSelected(false);
     			showErrorDialog("AutoUpdate error:", udae.getMessage(), udae);
     		}
     		catch (Throwable t) {
-    			autoUpdate.cancel(false);
-    			autoUpdate = null;
+    			killAutoUpdate();
     			checkBoxMenuItem.setSelected(false);
-    			getSessionRecorder().startRecording();
     		}
     	}
 
-        private void performUpdate(List<OWLOntologyChange> updates) {
-        	getSessionRecorder().stopRecording();       	
-            ontology.getOWLOntologyManager().applyChanges(updates);
-            getOWLEditorKit().getSearchManager().updateIndex(updates);
-            getSessionRecorder().startRecording();
-        	
+        /*
+         * The changes are checked against the uncommitted changes and applied in one go on the event
+         * dispatch thread, so that no edit can be made in between and every edit is recorded.
+         */
+        private void performUpdate(ChangeHistory remoteChangeHistory, List<OWLOntologyChange> updates) throws Exception {
+            GuiUtils.invokeAndWait(() -> {
+                List<OWLOntologyChange> conflictChanges = conflictDetector.getConflicts(getLatestChangesFromClient(),
+                        updates);
+                if (!conflictChanges.isEmpty()) {
+                    throw new SynchronizationException("Conflict was detected and unable to merge changes from the server");
+                }
+                applyRemoteChanges(ontology, updates);
+                vont.update(remoteChangeHistory);
+                return null;
+            });
             adjustImports(updates);
         }
 
-        private boolean isUpdated() {
-            try {
-            	ProjectId projectId = getClientSession().getActiveProject();
-                DocumentRevision remoteHead = LocalHttpClient.current_user().getRemoteHeadRevision(vont, projectId);
-                DocumentRevision localHead = vont.getHeadRevision();
-                return localHead.sameAs(remoteHead);
-            }
-            catch (ServiceUnavailableException e) {
-                // TODO: add non-blocking indicator / disable auto-update here ?
-                return true;
-            }
-            catch (Exception e) {
-                showErrorDialog("Update error", "Error while fetching the remote head revision\n" + e.getMessage(), e);
-                return true;
-            }
-        }
-
         public List<OWLOntologyChange> getLatestChangesFromClient() {
             return ClientUtils.getUncommittedChanges(getSessionRecorder(), vont.getOntology(), vont.getChangeHistory());
         }
 
-        private ChangeHistory getLatestChangesFromServer() {
-            //List<OWLOntologyChange> changes = new ArrayList<>();
-        	ChangeHistory remoteChangeHistory = null;
+        /*
+         * Fetches the revisions after the local head in one conditional request, nothing is
+         * returned when the local copy is already up-to-date or the server cannot be reached.
+         */
+        private Optional<ChangeHistory> getLatestChangesFromServer() {
             try {
             	ProjectId projectId = getClientSession().getActiveProject();
-                remoteChangeHistory = LocalHttpClient.current_user().getLatestChanges(vont, projectId);
-                //changes = ChangeHistoryUtils.getOntologyChanges(remoteChangeHistory, ontology);
+                return LocalHttpClient.current_user().getChangesSince(vont, projectId);
             }
             catch (ServiceUnavailableException e) {
                 // TODO: add non-blocking indicator here
             }
             catch (Exception e) {
-                showErrorDialog("Update error", "Error while fetching the latest changes from server", e);
+                showErrorDialog("Update error", "Error while fetching the latest changes from server\n" + e.getMessage(), e);
             }
-            return remoteChangeHistory;
+            return Optional.empty();
         }
 
-        private List<OWLOntologyChange> getConflicts(List<OWLOntologyChange> localChanges, List<OWLOntologyChange> remoteChanges) {
-            List<OWLOntologyChange> conflictChanges = new ArrayList<>();
-
-            CollectingChangeVisitor clientChanges = CollectingChangeVisitor.collectChanges(localChanges);
-            CollectingChangeVisitor serverChanges = CollectingChangeVisitor.collectChanges(remoteChanges);
-
-            /*
-             * Compute the conflicts by comparing the change signature between the client and server changes. The
-             * change signature is defined by the OWL object that becomes the focus of the change (i.e.,
-             * OWLImportDeclaration, OWLAnnotation, OWLAxiom) or the ontology ID.
-             */
-            if (clientChanges.getLastOntologyIDChange() != null && serverChanges.getLastOntologyIDChange() != null) {
-                conflictChanges.add(clientChanges.getLastOntologyIDChange());
-            }
-            final Map<OWLImportsDeclaration, ImportChange> importChanges = clientChanges.getLastImportChangeMap();
-            for (Entry<OWLImportsDeclaration, ImportChange> entry : importChanges.entrySet()) {
-                OWLImportsDeclaration decl = entry.getKey();
-                if (serverChanges.getLastImportChangeMap().containsKey(decl)) {
-                    conflictChanges.add(entry.getValue());
-                }
-            }
-            final Map<OWLAnnotation, AnnotationChange> annotationChanges = clientChanges.getLastOntologyAnnotationChangeMap();
-            for (Entry<OWLAnnotation, AnnotationChange> entry : annotationChanges.entrySet()) {
-                OWLAnnotation annotation = entry.getKey();
-                if (serverChanges.getLastOntologyAnnotationChangeMap().containsKey(annotation)) {
-                    conflictChanges.add(entry.getValue());
-                }
-            }
-            final Map<OWLAxiom, OWLAxiomChange> axiomChanges = clientChanges.getLastAxiomChangeMap();
-            for (Entry<OWLAxiom, OWLAxiomChange> entry : axiomChanges.entrySet()) {
-                OWLAxiom axiom = entry.getKey();
-                if (serverChanges.getLastAxiomChangeMap().containsKey(axiom)) {
-                    conflictChanges.add(entry.getValue());
-                }
-            }
-            return conflictChanges;
-        }
 
         private void adjustImports(List<OWLOntologyChange> changes) {
             OWLOntologyLoaderConfiguration configuration = new OWLOntologyLoaderConfiguration();
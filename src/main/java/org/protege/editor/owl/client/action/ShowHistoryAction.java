@@ -7,21 +7,15 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.Optional;
 
-import edu.stanford.protege.metaproject.api.AuthToken;
-
 import javax.swing.AbstractAction;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.KeyStroke;
 
-import org.protege.editor.owl.client.api.exception.AuthorizationException;
-import org.protege.editor.owl.client.api.exception.ClientRequestException;
-import org.protege.editor.owl.client.api.exception.LoginTimeoutException;
 import org.protege.editor.owl.client.event.ClientSessionChangeEvent;
 import org.protege.editor.owl.client.event.ClientSessionChangeEvent.EventCategory;
 import org.protege.editor.owl.client.event.ClientSessionListener;
 import org.protege.editor.owl.client.ui.ChangeHistoryPanel;
-import org.protege.editor.owl.client.ui.UserLoginPanel;
 import org.protege.editor.owl.model.OWLWorkspace;
 import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
 
@@ -68,23 +62,12 @@ public class ShowHistoryAction extends AbstractClientAction implements ClientSes
             dialog.setLocationRelativeTo(editorWindow);
             dialog.setVisible(true);
         }
-       catch (LoginTimeoutException e) {
-            showErrorDialog("Show history error", e.getMessage(), e);
-            Optional<AuthToken> authToken = UserLoginPanel.showDialog(getOWLEditorKit(), getEditorKit().getWorkspace());
-            if (authToken.isPresent() && authToken.get().isAuthorized()) {
-                reopenShowHistoryDialog();
-            }
-       }
        catch (Exception e) {
            showErrorDialog("Show history error", e.getMessage(), e);
        }
     }
 
-    private void reopenShowHistoryDialog() {
-        openShowHistoryDialog();
-    }
-
-    private JDialog createDialog() throws LoginTimeoutException, AuthorizationException, ClientRequestException {
+    private JDialog createDialog() {
         final JDialog dialog = new JDialog(null, "Browse Change History", Dialog.ModalityType.MODELESS);
         ChangeHistoryPanel changeHistoryPanel = new ChangeHistoryPanel(activeVersionOntology.get(), getOWLEditorKit());
         changeHistoryPanel.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "CLOSE_DIALOG");
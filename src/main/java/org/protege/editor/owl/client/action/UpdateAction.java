@@ -3,41 +3,38 @@ package org.protege.editor.owl.client.action;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
 
 import edu.stanford.protege.metaproject.api.AuthToken;
 
 import edu.stanford.protege.metaproject.api.ProjectId;
 import org.protege.editor.owl.client.LocalHttpClient;
+import org.protege.editor.owl.client.api.OperationHandle;
 import org.protege.editor.owl.client.api.exception.ClientRequestException;
 import org.protege.editor.owl.client.api.exception.LoginTimeoutException;
 import org.protege.editor.owl.client.api.exception.ServiceUnavailableException;
 import org.protege.editor.owl.client.api.exception.SynchronizationException;
 import org.protege.editor.owl.client.event.ClientSessionChangeEvent;
 import org.protege.editor.owl.client.event.ClientSessionListener;
+import org.protege.editor.owl.client.ui.OperationProgressDialog;
 import org.protege.editor.owl.client.ui.UserLoginPanel;
 import org.protege.editor.owl.client.event.ClientSessionChangeEvent.EventCategory;
 import org.protege.editor.owl.client.util.ClientUtils;
+import org.protege.editor.owl.client.util.ConflictDetector;
+import org.protege.editor.owl.client.util.GuiUtils;
 import org.protege.editor.owl.model.OWLModelManager;
 import org.protege.editor.owl.server.versioning.ChangeHistoryUtils;
-import org.protege.editor.owl.server.versioning.CollectingChangeVisitor;
 import org.protege.editor.owl.server.versioning.api.ChangeHistory;
 import org.protege.editor.owl.server.versioning.api.DocumentRevision;
 import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
 import org.semanticweb.owlapi.model.AddImport;
-import org.semanticweb.owlapi.model.AnnotationChange;
-import org.semanticweb.owlapi.model.ImportChange;
 import org.semanticweb.owlapi.model.MissingImportHandlingStrategy;
-import org.semanticweb.owlapi.model.OWLAnnotation;
-import org.semanticweb.owlapi.model.OWLAxiom;
-import org.semanticweb.owlapi.model.OWLAxiomChange;
 import org.semanticweb.owlapi.model.OWLImportsDeclaration;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
@@ -58,6 +55,8 @@ public class UpdateAction extends AbstractClientAction implements ClientSessionL
 
     private Optional<VersionedOWLOntology> activeVersionOntology = Optional.empty();
 
+    private final ConflictDetector conflictDetector = new ConflictDetector();
+
     @Override
     public void initialise() throws Exception {
         super.initialise();
@@ -74,10 +73,18 @@ public class UpdateAction extends AbstractClientAction implements ClientSessionL
     public void handleChange(ClientSessionChangeEvent event) {
         if (event.hasCategory(EventCategory.SWITCH_ONTOLOGY)) {
             activeVersionOntology = Optional.ofNullable(event.getSource().getActiveVersionOntology());
-            setEnabled(activeVersionOntology.isPresent());
+            updateEnabled();
+        }
+        else if (event.hasCategory(EventCategory.CATCHING_UP) || event.hasCategory(EventCategory.CAUGHT_UP)) {
+            updateEnabled();
         }
     }
 
+    private void updateEnabled() {
+        setEnabled(activeVersionOntology.isPresent()
+                && !getClientSession().isCatchingUp(activeVersionOntology.get()));
+    }
+
     @Override
     public void actionPerformed(ActionEvent event) {
         performUpdate();
@@ -106,12 +113,17 @@ public class UpdateAction extends AbstractClientAction implements ClientSessionL
 
     private Optional<List<OWLOntologyChange>> update() throws InterruptedException, ServiceUnavailableException {
         Optional<List<OWLOntologyChange>> incomingChanges = Optional.empty();
+        OperationHandle handle = new OperationHandle("Update");
         try {
-            Future<?> task = submit(new DoUpdate(getOWLModelManager(), activeVersionOntology.get()));
-            incomingChanges = Optional.ofNullable((List<OWLOntologyChange>) task.get());
+            Future<?> task = submit(new DoUpdate(getOWLModelManager(), activeVersionOntology.get(), handle));
+            incomingChanges = Optional.ofNullable((List<OWLOntologyChange>) OperationProgressDialog.waitFor(
+                    getOWLEditorKit().getWorkspace(), "Updating from server", handle, task));
         }
         catch (ExecutionException e) {
             Throwable t = e.getCause();
+            if (handle.isCancelled()) {
+                return incomingChanges; // nothing was applied
+            }
             String originalMessage = t.getMessage();
             if (t instanceof LoginTimeoutException) {
                 showErrorDialog("Update error", originalMessage, t);
@@ -139,115 +151,91 @@ public class UpdateAction extends AbstractClientAction implements ClientSessionL
         
         private VersionedOWLOntology vont;
         private OWLOntology ontology;
+        private OperationHandle handle;
         
 //        private OWLModelManagerImpl modMan;
 
-        public DoUpdate(OWLModelManager modMan, VersionedOWLOntology vont) {
+        public DoUpdate(OWLModelManager modMan, VersionedOWLOntology vont, OperationHandle handle) {
             this.vont = vont;
+            this.handle = handle;
             ontology = vont.getOntology();
 //            this.modMan = (OWLModelManagerImpl) modMan;
         }
 
+        /*
+         * The changes are downloaded without holding the sync lock, so a commit running at the
+         * same time is not held up by the download. If the commit moves the head in the meantime,
+         * the changes are downloaded again from the new head. The update can be cancelled until
+         * the changes are applied, which happens all at once.
+         */
         @Override
         public List<OWLOntologyChange> call() throws Exception{
-            List<OWLOntologyChange> incomingChanges = new ArrayList<>();
-            if (!isUpdated()) {
-                List<OWLOntologyChange> localChanges = getLatestChangesFromClient();
-                ChangeHistory remoteChangeHistory = getLatestChangesFromServer();
-                List<OWLOntologyChange> remoteChanges = ChangeHistoryUtils.getOntologyChanges(remoteChangeHistory, ontology);
-
-                List<OWLOntologyChange> conflictChanges = getConflicts(localChanges, remoteChanges);
-                if (conflictChanges.isEmpty()) {
-                    performUpdate(remoteChanges);
-                    incomingChanges = remoteChanges;
-                    vont.update(remoteChangeHistory);
-                }
-                else {
-                    throw new SynchronizationException("Conflict was detected and unable to merge changes from the server");
+            Lock lock = getSyncLock();
+            try (OperationHandle.Scope scope = handle.attach()) {
+                while (true) {
+                    handle.setStage("Downloading changes");
+                    DocumentRevision base = vont.getHeadRevision();
+                    Optional<ChangeHistory> latestChanges = getLatestChangesFromServer();
+                    if (!latestChanges.isPresent()) {
+                        return new ArrayList<>();
+                    }
+                    lock.lockInterruptibly();
+                    try {
+                        handle.checkCancelled();
+                        if (vont.getHeadRevision().sameAs(base)) {
+                            handle.setStage("Applying changes");
+                            List<OWLOntologyChange> appliedChanges = applyChanges(latestChanges.get());
+                            LocalHttpClient.current_user().recordIndexedRevision(getClientSession().getActiveProject(),
+                                    base, vont.getHeadRevision());
+                            return appliedChanges;
+                        }
+                    }
+                    finally {
+                        lock.unlock();
+                    }
                 }
             }
-            return incomingChanges;
-        }
-
-        private void performUpdate(List<OWLOntologyChange> updates) {
-        	getSessionRecorder().stopRecording();        	
-            ontology.getOWLOntologyManager().applyChanges(updates);
-            getOWLEditorKit().getSearchManager().updateIndex(updates);
-            getSessionRecorder().startRecording();
-            
-            adjustImports(updates);
+            finally {
+                handle.finish();
+            }
         }
 
-        private boolean isUpdated() throws Exception {
-            try {
-                ProjectId projectId = getClientSession().getActiveProject();
-                DocumentRevision remoteHead = LocalHttpClient.current_user().getRemoteHeadRevision(vont, projectId);
-                DocumentRevision localHead = vont.getHeadRevision();
-                return localHead.sameAs(remoteHead);
-            }
-            //catch (ServiceUnavailableException e) {
-                //throw e;
-            //}
-            catch (Exception e) {
-            	throw e;
-                //showErrorDialog("Update error", "Error while fetching the remote head revision", e);
-                //return false;
-            }
+        /*
+         * The changes are checked against the uncommitted changes and applied in one go on the event
+         * dispatch thread, so that no edit can be made in between and every edit is recorded.
+         */
+        private List<OWLOntologyChange> applyChanges(ChangeHistory remoteChangeHistory) throws Exception {
+            List<OWLOntologyChange> remoteChanges = ChangeHistoryUtils.getOntologyChanges(remoteChangeHistory, ontology);
+            int revisionCount = remoteChangeHistory.getRevisions().size();
+            handle.addRevisionsExpected(revisionCount);
+            GuiUtils.invokeAndWait(() -> {
+                List<OWLOntologyChange> conflictChanges = conflictDetector.getConflicts(getLatestChangesFromClient(),
+                        remoteChanges);
+                if (!conflictChanges.isEmpty()) {
+                    throw new SynchronizationException("Conflict was detected and unable to merge changes from the server");
+                }
+                applyRemoteChanges(ontology, remoteChanges);
+                vont.update(remoteChangeHistory);
+                return null;
+            });
+            handle.addRevisionsApplied(revisionCount);
+            adjustImports(remoteChanges);
+            return remoteChanges;
         }
 
         public List<OWLOntologyChange> getLatestChangesFromClient() {
             return ClientUtils.getUncommittedChanges(getSessionRecorder(), vont.getOntology(), vont.getChangeHistory());
         }
 
-        private ChangeHistory getLatestChangesFromServer() {
-        	ChangeHistory remoteChangeHistory = null;
-            try {
-                ProjectId projectId = getClientSession().getActiveProject();
-                remoteChangeHistory = LocalHttpClient.current_user().getLatestChanges(vont, projectId);
-            }
-            catch (Exception e) {
-                showErrorDialog("Update error", e.getMessage(), e);
-            }
-            return remoteChangeHistory;
+        /*
+         * Fetches the revisions after the local head in one conditional request, nothing is
+         * returned when the local copy is already up-to-date.
+         */
+        private Optional<ChangeHistory> getLatestChangesFromServer() throws Exception {
+            ProjectId projectId = getClientSession().getActiveProject();
+            return LocalHttpClient.current_user().getChangesSince(vont, projectId);
         }
 
-        private List<OWLOntologyChange> getConflicts(List<OWLOntologyChange> localChanges, List<OWLOntologyChange> remoteChanges) {
-            List<OWLOntologyChange> conflictChanges = new ArrayList<>();
-
-            CollectingChangeVisitor clientChanges = CollectingChangeVisitor.collectChanges(localChanges);
-            CollectingChangeVisitor serverChanges = CollectingChangeVisitor.collectChanges(remoteChanges);
-
-            /*
-             * Compute the conflicts by comparing the change signature between the client and server changes. The
-             * change signature is defined by the OWL object that becomes the focus of the change (i.e.,
-             * OWLImportDeclaration, OWLAnnotation, OWLAxiom) or the ontology ID.
-             */
-            if (clientChanges.getLastOntologyIDChange() != null && serverChanges.getLastOntologyIDChange() != null) {
-                conflictChanges.add(clientChanges.getLastOntologyIDChange());
-            }
-            final Map<OWLImportsDeclaration, ImportChange> importChanges = clientChanges.getLastImportChangeMap();
-            for (Entry<OWLImportsDeclaration, ImportChange> entry : importChanges.entrySet()) {
-                OWLImportsDeclaration decl = entry.getKey();
-                if (serverChanges.getLastImportChangeMap().containsKey(decl)) {
-                    conflictChanges.add(entry.getValue());
-                }
-            }
-            final Map<OWLAnnotation, AnnotationChange> annotationChanges = clientChanges.getLastOntologyAnnotationChangeMap();
-            for (Entry<OWLAnnotation, AnnotationChange> entry : annotationChanges.entrySet()) {
-                OWLAnnotation annotation = entry.getKey();
-                if (serverChanges.getLastOntologyAnnotationChangeMap().containsKey(annotation)) {
-                    conflictChanges.add(entry.getValue());
-                }
-            }
-            final Map<OWLAxiom, OWLAxiomChange> axiomChanges = clientChanges.getLastAxiomChangeMap();
-            for (Entry<OWLAxiom, OWLAxiomChange> entry : axiomChanges.entrySet()) {
-                OWLAxiom axiom = entry.getKey();
-                if (serverChanges.getLastAxiomChangeMap().containsKey(axiom)) {
-                    conflictChanges.add(entry.getValue());
-                }
-            }
-            return conflictChanges;
-        }
 
         private void adjustImports(List<OWLOntologyChange> changes) {
             OWLOntologyLoaderConfiguration configuration = new OWLOntologyLoaderConfiguration();
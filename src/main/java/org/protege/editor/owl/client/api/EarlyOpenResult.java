@@ -0,0 +1,16 @@
+package org.protege.editor.owl.client.api;
+
+import org.protege.editor.owl.server.versioning.api.ChangeHistory;
+import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
+
+import java.util.Optional;
+
+public class EarlyOpenResult {
+	public VersionedOWLOntology versionedOntology;
+	public Optional<ChangeHistory> pendingHistory; // the revisions after the head of the versioned ontology
+
+	public EarlyOpenResult(VersionedOWLOntology versionedOntology, ChangeHistory pendingHistory) {
+		this.versionedOntology = versionedOntology;
+		this.pendingHistory = Optional.ofNullable(pendingHistory);
+	}
+}
@@ -0,0 +1,320 @@
+package org.protege.editor.owl.client.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of a long-running client operation, e.g., opening a project, and lets
+ * the user cancel it.
+ *
+ * The handle is attached to the thread that performs the operation, and the code down the
+ * call chain reports to the {@link #current() current} handle: the HTTP client counts the
+ * bytes sent and received, the snapshot reader the axioms loaded and the history replay the
+ * revisions applied. Cancelling aborts the network calls in flight and makes the next
+ * {@link #checkCancelled()} fail, after which the operation is expected to undo what it has
+ * done so far and end with a {@link CancellationException} (or the I/O error of an aborted
+ * call).
+ */
+public class OperationHandle {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationHandle.class);
+
+    private static final ThreadLocal<OperationHandle> current = new ThreadLocal<>();
+
+    /**
+     * Detaches the handle from the thread again when closed.
+     */
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Removes a cancel action again when closed, once the step it aborts is over.
+     */
+    public interface Registration extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private final String name;
+
+    private volatile String stage;
+    private volatile boolean cancelled = false;
+    private volatile boolean cancellable = true;
+    private volatile boolean done = false;
+
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesExpected = new AtomicLong();
+    private final AtomicLong revisionsApplied = new AtomicLong();
+    private final AtomicLong revisionsExpected = new AtomicLong();
+    private final AtomicLong axiomsLoaded = new AtomicLong();
+
+    private volatile long bandwidthLimit = 0; // in bytes per second, none when 0
+
+    /*
+     * The time at which the bytes transferred so far are within the bandwidth limit
+     */
+    private long throttleDeadline = 0;
+    private final Object throttleLock = new Object();
+
+    private final List<Runnable> cancelActions = new ArrayList<>();
+
+    public OperationHandle(String name) {
+        this.name = name;
+        this.stage = name;
+    }
+
+    /**
+     * Gets the handle attached to the calling thread, if any.
+     */
+    public static Optional<OperationHandle> current() {
+        return Optional.ofNullable(current.get());
+    }
+
+    /**
+     * Attaches the handle to the calling thread until the returned scope is closed.
+     */
+    public Scope attach() {
+        OperationHandle previous = current.get();
+        current.set(this);
+        return () -> current.set(previous);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * Cancels the operation, aborting whatever it is waiting for.
+     */
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (cancelActions) {
+            if (cancelled || done || !cancellable) {
+                return;
+            }
+            cancelled = true;
+            actions = new ArrayList<>(cancelActions);
+        }
+        logger.info(name + " cancelled during: " + stage);
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Makes the operation no longer cancellable, from the point where aborting it could leave the
+     * client and the server out of step, e.g., once a commit has been sent in full and the server
+     * may accept it at any time. Fails if the operation was cancelled before that point.
+     */
+    public void disableCancel() {
+        synchronized (cancelActions) {
+            checkCancelled();
+            cancellable = false;
+        }
+    }
+
+    /**
+     * Makes the operation cancellable again, e.g., once the server has answered that it did not
+     * accept the commit.
+     */
+    public void enableCancel() {
+        cancellable = true;
+    }
+
+    public boolean isCancellable() {
+        return cancellable && !done;
+    }
+
+    /**
+     * Fails if the operation was cancelled. Called by the operation at the points where it can
+     * stop safely.
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException(name + " was cancelled");
+        }
+    }
+
+    /**
+     * Registers what needs to be done to abort the current step of the operation, e.g., cancel
+     * a network call. The action is run right away if the operation is already cancelled. The
+     * returned registration is to be closed when the step is over, so that the actions of the
+     * finished steps do not pile up.
+     */
+    public Registration onCancel(Runnable action) {
+        synchronized (cancelActions) {
+            if (!cancelled) {
+                cancelActions.add(action);
+                return () -> {
+                    synchronized (cancelActions) {
+                        cancelActions.remove(action);
+                    }
+                };
+            }
+        }
+        action.run();
+        return () -> {
+            // NO-OP
+        };
+    }
+
+    /**
+     * Marks the operation as done, successfully or not. It cannot be cancelled from then on.
+     */
+    public void finish() {
+        synchronized (cancelActions) {
+            done = true;
+            cancelActions.clear();
+        }
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void addBytesSent(long count) {
+        bytesSent.addAndGet(count);
+    }
+
+    public void addBytesReceived(long count) {
+        bytesReceived.addAndGet(count);
+    }
+
+    /**
+     * Adds the announced length of a response that is about to be received.
+     */
+    public void addBytesExpected(long count) {
+        bytesExpected.addAndGet(count);
+    }
+
+    public void addRevisionsApplied(long count) {
+        revisionsApplied.addAndGet(count);
+    }
+
+    public void addRevisionsExpected(long count) {
+        revisionsExpected.addAndGet(count);
+    }
+
+    public void addAxiomsLoaded(long count) {
+        axiomsLoaded.addAndGet(count);
+    }
+
+    /**
+     * Caps the rate at which the operation transfers data, e.g., so that a background download
+     * leaves room for the interactive traffic. A limit of 0 removes the cap.
+     */
+    public void setBandwidthLimit(long bytesPerSecond) {
+        bandwidthLimit = Math.max(0, bytesPerSecond);
+    }
+
+    public long getBandwidthLimit() {
+        return bandwidthLimit;
+    }
+
+    /**
+     * Blocks for as long as needed to keep the given number of bytes, just transferred, within
+     * the bandwidth limit of the operation. Returns straight away when there is no limit.
+     */
+    public void throttle(long count) throws InterruptedException {
+        long limit = bandwidthLimit;
+        if (limit <= 0) {
+            return;
+        }
+        long delay;
+        synchronized (throttleLock) {
+            long now = System.nanoTime();
+            throttleDeadline = Math.max(throttleDeadline, now) + TimeUnit.SECONDS.toNanos(count) / limit;
+            delay = throttleDeadline - now;
+        }
+        if (delay > 0) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+    }
+
+    public long getBytesTransferred() {
+        return bytesSent.get() + bytesReceived.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getBytesExpected() {
+        return bytesExpected.get();
+    }
+
+    public long getRevisionsApplied() {
+        return revisionsApplied.get();
+    }
+
+    public long getRevisionsExpected() {
+        return revisionsExpected.get();
+    }
+
+    public long getAxiomsLoaded() {
+        return axiomsLoaded.get();
+    }
+
+    /**
+     * Gets the fraction of the operation that is done, as far as it can be told: the part of
+     * the expected download that has arrived or, after that, the part of the expected revisions
+     * that has been applied. Nothing is returned when neither is known.
+     */
+    public Optional<Double> getFractionDone() {
+        long expectedBytes = bytesExpected.get();
+        long receivedBytes = bytesReceived.get();
+        if (expectedBytes > 0 && receivedBytes < expectedBytes) {
+            return Optional.of((double) receivedBytes / expectedBytes);
+        }
+        long expectedRevisions = revisionsExpected.get();
+        if (expectedRevisions > 0) {
+            return Optional.of(Math.min(1.0, (double) revisionsApplied.get() / expectedRevisions));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Gets a one-line summary of the progress so far.
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%.1f MB transferred", getBytesTransferred() / (1024.0 * 1024.0)));
+        if (revisionsExpected.get() > 0) {
+            summary.append(String.format(", %d of %d revisions applied", revisionsApplied.get(),
+                    revisionsExpected.get()));
+        }
+        if (axiomsLoaded.get() > 0) {
+            summary.append(String.format(", %d axioms loaded", axiomsLoaded.get()));
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + stage + "): " + getSummary();
+    }
+}
@@ -0,0 +1,18 @@
+package org.protege.editor.owl.client.event;
+
+import org.protege.editor.owl.model.history.HistoryManager;
+import org.protege.editor.owl.model.history.UndoManagerListener;
+
+/**
+ * An undo manager listener that is told how many logged changes a (coalesced) state change
+ * notification stands for.
+ */
+public interface CoalescedUndoManagerListener extends UndoManagerListener {
+
+    void stateChanged(HistoryManager source, int changeCount);
+
+    @Override
+    default void stateChanged(HistoryManager source) {
+        stateChanged(source, 0);
+    }
+}
@@ -0,0 +1,84 @@
+package org.protege.editor.owl.client.ui;
+
+import org.protege.editor.owl.OWLEditorKit;
+import org.protege.editor.owl.model.event.EventType;
+import org.protege.editor.owl.model.event.OWLModelManagerChangeEvent;
+import org.protege.editor.owl.model.event.OWLModelManagerListener;
+import org.protege.editor.owl.ui.renderer.OWLCellRenderer;
+import org.semanticweb.owlapi.model.OWLObject;
+
+import javax.swing.JTable;
+import java.awt.Component;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Renders OWL objects like the {@link OWLCellRenderer}, with their icons and colouring, but
+ * keeps the text of the most recently shown objects. Scrolling through a long change list then
+ * renders each object once, rather than on every paint of its cell. The kept text is dropped
+ * when the entity renderer or the rendering of an entity changes.
+ *
+ * The renderer listens to the model manager until it is disposed.
+ */
+public class CachedRenderingCellRenderer extends OWLCellRenderer {
+
+    private static final int CACHE_SIZE = 10000; // in objects
+
+    private final OWLEditorKit editorKit;
+
+    /*
+     * Only used on the event dispatch thread
+     */
+    private final Map<OWLObject, String> renderings = new LinkedHashMap<OWLObject, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = -4207546093616151868L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<OWLObject, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private JTable table;
+
+    private final OWLModelManagerListener renderingListener = new OWLModelManagerListener() {
+        @Override
+        public void handleChange(OWLModelManagerChangeEvent event) {
+            if (event.isType(EventType.ENTITY_RENDERER_CHANGED) || event.isType(EventType.ENTITY_RENDERING_CHANGED)) {
+                renderings.clear();
+                if (table != null) {
+                    table.repaint();
+                }
+            }
+        }
+    };
+
+    public CachedRenderingCellRenderer(OWLEditorKit editorKit) {
+        super(editorKit);
+        this.editorKit = editorKit;
+        editorKit.getOWLModelManager().addListener(renderingListener);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+            boolean hasFocus, int row, int column) {
+        this.table = table;
+        return super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+    }
+
+    @Override
+    protected String getRendering(Object object) {
+        if (object instanceof OWLObject) {
+            return renderings.computeIfAbsent((OWLObject) object, super::getRendering);
+        }
+        return super.getRendering(object);
+    }
+
+    /**
+     * Stops listening to the model manager and drops the kept text.
+     */
+    public void dispose() {
+        editorKit.getOWLModelManager().removeListener(renderingListener);
+        renderings.clear();
+        table = null;
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.event.ActionListener;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -18,6 +19,7 @@ import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
@@ -31,18 +33,20 @@ import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 import javax.swing.table.TableRowSorter;
 
+import edu.stanford.protege.metaproject.api.AuthToken;
 import edu.stanford.protege.metaproject.api.ProjectId;
+import org.protege.editor.core.ui.util.JOptionPaneEx;
 import org.protege.editor.owl.OWLEditorKit;
 import org.protege.editor.owl.client.ClientSession;
 import org.protege.editor.owl.client.LocalHttpClient;
-import org.protege.editor.owl.client.api.exception.AuthorizationException;
-import org.protege.editor.owl.client.api.exception.ClientRequestException;
+import org.protege.editor.owl.client.api.OperationHandle;
 import org.protege.editor.owl.client.api.exception.LoginTimeoutException;
-import org.protege.editor.owl.server.versioning.ChangeHistoryUtils;
-import org.protege.editor.owl.server.versioning.api.ChangeHistory;
+import org.protege.editor.owl.client.api.exception.OWLClientException;
+import org.protege.editor.owl.client.util.ClientScheduler;
+import org.protege.editor.owl.client.util.ClientScheduler.Lane;
 import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.protege.editor.owl.server.versioning.api.RevisionMetadata;
 import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
-import org.protege.editor.owl.ui.renderer.OWLCellRenderer;
 import org.semanticweb.owlapi.model.OWLObject;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
@@ -62,17 +66,36 @@ public class ChangeHistoryPanel extends JPanel {
     private VersionedOWLOntology vont;
 
     private JTable changeListTable;
+    private CachedRenderingCellRenderer changeListRenderer;
     private ChangeListTableModel changeListTableModel;
 
-    public ChangeHistoryPanel(VersionedOWLOntology vont, OWLEditorKit editorKit)
-            throws LoginTimeoutException, AuthorizationException, ClientRequestException {
+    private RevisionHistorySource source;
+    private HistoryTableModel historyTableModel;
+    private final JLabel statusLabel = new JLabel(" ");
+
+    private volatile OperationHandle loadHandle;
+
+    /*
+     * Counts the selections in the history table, so that the changes fetched for an older
+     * selection are not shown
+     */
+    private volatile int selectionCount = 0;
+
+    private static final int ROW_CHUNK_SIZE = 5000;
+
+    /**
+     * Creates the panel right away, the revisions are loaded in the background and listed as
+     * they arrive.
+     */
+    public ChangeHistoryPanel(VersionedOWLOntology vont, OWLEditorKit editorKit) {
         this.vont = vont;
         this.editorKit = editorKit;
         this.ontology = editorKit.getOWLModelManager().getActiveOntology();
         initUI();
+        loadHistory(source.getBaseRevision());
     }
 
-    private void initUI() throws LoginTimeoutException, AuthorizationException, ClientRequestException {
+    private void initUI() {
         String shortOntologyName = "";
         OWLOntologyID ontologyId = ontology.getOntologyID();
         if (!ontologyId.isAnonymous()) {
@@ -96,7 +119,10 @@ public class ChangeHistoryPanel extends JPanel {
         panel.add(label);
         panel.add(Box.createRigidArea(new Dimension(0, 5)));
         panel.add(getHistoryComponent());
-        panel.add(Box.createRigidArea(new Dimension(0, 11)));
+        panel.add(Box.createRigidArea(new Dimension(0, 3)));
+        statusLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        panel.add(statusLabel);
+        panel.add(Box.createRigidArea(new Dimension(0, 8)));
 
         // Change details
         label = new JLabel("Change Details");
@@ -112,23 +138,24 @@ public class ChangeHistoryPanel extends JPanel {
         add(getButtonPanel(), BorderLayout.SOUTH);
     }
 
-    private JComponent getHistoryComponent() throws LoginTimeoutException, AuthorizationException, ClientRequestException {
+    private JComponent getHistoryComponent() {
         ProjectId projectId = ClientSession.getInstance(editorKit).getActiveProject();
-        ChangeHistory remoteChanges = LocalHttpClient.current_user().getAllChanges(vont.getServerDocument(), projectId);
-        HistoryTableModel model = new HistoryTableModel(remoteChanges);
+        // only the metadata is listed, the changes of a revision are fetched when it is selected
+        source = new RevisionHistorySource(LocalHttpClient.current_user(), vont, projectId);
+        HistoryTableModel model = new HistoryTableModel(source.getBaseRevision());
+        historyTableModel = model;
         final JTable table = new JTable(model);
         table.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
             @Override
             public void valueChanged(ListSelectionEvent listSelectionEvent) {
-                List<OWLOntologyChange> changesToDisplay = new ArrayList<OWLOntologyChange>();
-                DocumentRevision baseRevision = remoteChanges.getBaseRevision();
+                if (listSelectionEvent.getValueIsAdjusting()) {
+                    return;
+                }
+                List<DocumentRevision> revisions = new ArrayList<DocumentRevision>();
                 for (int row : table.getSelectedRows()) {
-                    DocumentRevision start = baseRevision.next(table.convertRowIndexToModel(row));
-                    ChangeHistory subChangeHistory = ChangeHistoryUtils.crop(remoteChanges, start, 1);
-                    List<OWLOntologyChange> subChanges = ChangeHistoryUtils.getOntologyChanges(subChangeHistory, ontology);
-                    changesToDisplay.addAll(subChanges);
+                    revisions.add(model.getRevision(table.convertRowIndexToModel(row)));
                 }
-                changeListTableModel.setChangeList(changesToDisplay);
+                showChanges(revisions);
             }
         });
 
@@ -151,10 +178,132 @@ public class ChangeHistoryPanel extends JPanel {
         return scrollPane;
     }
 
+    /*
+     * Loads the metadata of the revisions after the given one on the bulk lane of the client
+     * scheduler, adding each page to the history table as it arrives.
+     */
+    private void loadHistory(DocumentRevision start) {
+        OperationHandle handle = new OperationHandle("Load change history");
+        loadHandle = handle;
+        statusLabel.setText("Loading revisions...");
+        ClientScheduler.getInstance().submit(Lane.BULK, () -> {
+            DocumentRevision last = start;
+            try (OperationHandle.Scope scope = handle.attach()) {
+                List<RevisionMetadata> page;
+                do {
+                    handle.checkCancelled();
+                    page = source.getMetadata(last, RevisionHistorySource.PAGE_SIZE);
+                    last = last.next(page.size());
+                    List<RevisionMetadata> rows = page;
+                    SwingUtilities.invokeLater(() -> {
+                        if (!handle.isCancelled()) {
+                            historyTableModel.addRevisions(rows);
+                            statusLabel.setText(String.format("Loading revisions... %d loaded",
+                                    historyTableModel.getRowCount()));
+                        }
+                    });
+                } while (page.size() == RevisionHistorySource.PAGE_SIZE);
+                SwingUtilities.invokeLater(() -> statusLabel.setText(
+                        String.format("%d revisions", historyTableModel.getRowCount())));
+            }
+            catch (LoginTimeoutException e) {
+                DocumentRevision resumeFrom = last;
+                SwingUtilities.invokeLater(() -> loginAndResume(e, resumeFrom));
+            }
+            catch (Exception e) {
+                if (!handle.isCancelled()) {
+                    SwingUtilities.invokeLater(() -> {
+                        statusLabel.setText("Unable to load all the revisions");
+                        showError(e);
+                    });
+                }
+            }
+            finally {
+                handle.finish();
+            }
+        });
+    }
+
+    private void loginAndResume(LoginTimeoutException e, DocumentRevision resumeFrom) {
+        if (!isDisplayable()) {
+            return; // closed in the meantime
+        }
+        showError(e);
+        Optional<AuthToken> authToken = UserLoginPanel.showDialog(editorKit, this);
+        if (authToken.isPresent() && authToken.get().isAuthorized()) {
+            loadHistory(resumeFrom);
+        }
+        else {
+            statusLabel.setText("Unable to load all the revisions");
+        }
+    }
+
+    /*
+     * Prepares the rows of the selected revisions on the interactive lane, as some may have to
+     * come from the server, and adds them to the change list in chunks as they are ready, unless
+     * the selection has changed since.
+     */
+    private void showChanges(List<DocumentRevision> revisions) {
+        int selection = ++selectionCount;
+        changeListTableModel.setRows(new ArrayList<ChangeListTableModel.Row>());
+        if (revisions.isEmpty()) {
+            return;
+        }
+        ClientScheduler.getInstance().submit(Lane.INTERACTIVE, () -> {
+            List<ChangeListTableModel.Row> chunk = new ArrayList<ChangeListTableModel.Row>();
+            try {
+                for (DocumentRevision revision : revisions) {
+                    if (selection != selectionCount) {
+                        return; // superseded, the rows would not be shown
+                    }
+                    chunk.addAll(source.getRows(revision));
+                    if (chunk.size() >= ROW_CHUNK_SIZE) {
+                        addRows(selection, chunk);
+                        chunk = new ArrayList<ChangeListTableModel.Row>();
+                    }
+                }
+                addRows(selection, chunk);
+            }
+            catch (OWLClientException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (selection == selectionCount) {
+                        showError(e);
+                    }
+                });
+            }
+        });
+    }
+
+    private void addRows(int selection, List<ChangeListTableModel.Row> rows) {
+        SwingUtilities.invokeLater(() -> {
+            if (selection == selectionCount) {
+                changeListTableModel.addRows(rows);
+            }
+        });
+    }
+
+    private void showError(Exception e) {
+        JOptionPaneEx.showConfirmDialog(this, "Change history error", new JLabel(e.getMessage()),
+                JOptionPane.ERROR_MESSAGE, JOptionPane.DEFAULT_OPTION, null);
+    }
+
+    @Override
+    public void removeNotify() {
+        // the dialog is closed, whatever is still loading is of no use
+        OperationHandle handle = loadHandle;
+        if (handle != null) {
+            handle.cancel();
+        }
+        selectionCount++;
+        changeListRenderer.dispose();
+        super.removeNotify();
+    }
+
     private JComponent getChangeListComponent() {
         changeListTableModel = new ChangeListTableModel(new ArrayList<OWLOntologyChange>());
         changeListTable = new JTable(changeListTableModel);
-        changeListTable.setDefaultRenderer(OWLObject.class, new OWLCellRenderer(editorKit));
+        changeListRenderer = new CachedRenderingCellRenderer(editorKit);
+        changeListTable.setDefaultRenderer(OWLObject.class, changeListRenderer);
         JScrollPane scrollPane = new JScrollPane(changeListTable);
         scrollPane.setAlignmentX(Component.LEFT_ALIGNMENT);
         return scrollPane;
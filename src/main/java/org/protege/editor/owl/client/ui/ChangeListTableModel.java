@@ -13,6 +13,8 @@ import org.semanticweb.owlapi.model.RemoveImport;
 import org.semanticweb.owlapi.model.RemoveOntologyAnnotation;
 import org.semanticweb.owlapi.model.SetOntologyID;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -41,7 +43,7 @@ public class ChangeListTableModel extends AbstractTableModel {
             }
         };
 
-        private String name;
+        private final String name;
 
         private Column(String name) {
             this.name = name;
@@ -54,15 +56,112 @@ public class ChangeListTableModel extends AbstractTableModel {
         public abstract Object getValue(RevisionMetadata metaData);
     }
 
-    private List<OWLOntologyChange> changes;
+    public enum ChangeType {
+        ADD_AXIOM("Add Axiom"),
+        REMOVE_AXIOM("Remove Axiom"),
+        SET_ONTOLOGY_ID("Set Ontology Id"),
+        ADD_IMPORT("Add Import"),
+        REMOVE_IMPORT("Remove Import"),
+        ADD_ONTOLOGY_ANNOTATION("Add Ontology Annotation"),
+        REMOVE_ONTOLOGY_ANNOTATION("Remove Ontology Annotation");
+
+        private static final ChangeType[] values = values();
+
+        private final String name;
+
+        private ChangeType(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * A change as the table shows it, its type and the entity it changes worked out once.
+     */
+    public static class Row {
+
+        private final ChangeType changeType;
+        private final OWLObject entityChanged;
+
+        private Row(ChangeType changeType, OWLObject entityChanged) {
+            this.changeType = changeType;
+            this.entityChanged = entityChanged;
+        }
+
+        public static Row of(OWLOntologyChange change) {
+            RenderOntologyChangeVisitor visitor = new RenderOntologyChangeVisitor();
+            change.accept(visitor);
+            return new Row(visitor.getChangeType(), visitor.getEntityChanged());
+        }
+
+        public ChangeType getChangeType() {
+            return changeType;
+        }
+
+        public OWLObject getEntityChanged() {
+            return entityChanged;
+        }
+    }
+
+    /*
+     * The rows, column by column: the ordinal of the change type and the changed entity. Only
+     * the first rowCount entries are in use, the arrays grow as rows are added.
+     */
+    private byte[] changeTypes = new byte[0];
+    private OWLObject[] entities = new OWLObject[0];
+    private int rowCount = 0;
 
     public ChangeListTableModel(List<OWLOntologyChange> changes) {
-        this.changes = changes;
+        addRows(toRows(changes));
     }
 
     public void setChangeList(List<OWLOntologyChange> changes) {
-        this.changes = changes;
-        fireTableStructureChanged();
+        setRows(toRows(changes));
+    }
+
+    /**
+     * Shows the given rows, e.g., those prepared beforehand for the changes of some revisions.
+     */
+    public void setRows(List<Row> rows) {
+        changeTypes = new byte[0];
+        entities = new OWLObject[0];
+        rowCount = 0;
+        fireTableDataChanged();
+        addRows(rows);
+    }
+
+    /**
+     * Adds the given rows after the ones shown, so that a long list can be shown as it is being
+     * prepared.
+     */
+    public void addRows(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int newRowCount = rowCount + rows.size();
+        if (newRowCount > entities.length) {
+            int capacity = Math.max(newRowCount, entities.length * 2);
+            changeTypes = Arrays.copyOf(changeTypes, capacity);
+            entities = Arrays.copyOf(entities, capacity);
+        }
+        int firstRow = rowCount;
+        for (Row row : rows) {
+            changeTypes[rowCount] = (byte) row.getChangeType().ordinal();
+            entities[rowCount] = row.getEntityChanged();
+            rowCount++;
+        }
+        fireTableRowsInserted(firstRow, rowCount - 1);
+    }
+
+    private static List<Row> toRows(List<OWLOntologyChange> changes) {
+        List<Row> rows = new ArrayList<>(changes.size());
+        for (OWLOntologyChange change : changes) {
+            rows.add(Row.of(change));
+        }
+        return rows;
     }
 
     @Override
@@ -72,7 +171,7 @@ public class ChangeListTableModel extends AbstractTableModel {
 
     @Override
     public int getRowCount() {
-        return changes.size();
+        return rowCount;
     }
 
     @Override
@@ -97,14 +196,11 @@ public class ChangeListTableModel extends AbstractTableModel {
     @Override
     public Object getValueAt(int row, int column) {
         Column col = Column.values()[column];
-        OWLOntologyChange change = changes.get(row);
-        RenderOntologyChangeVisitor visitor = new RenderOntologyChangeVisitor();
-        change.accept(visitor);
         switch (col) {
             case CHANGE_TYPE:
-                return visitor.getChangeType();
+                return ChangeType.values[changeTypes[row]].getName();
             case ENTITY:
-                return visitor.getEntityChanged();
+                return entities[row];
             default:
                 throw new IllegalStateException("Programmer error: he missed a case");
         }
@@ -112,56 +208,56 @@ public class ChangeListTableModel extends AbstractTableModel {
 
     private static class RenderOntologyChangeVisitor implements OWLOntologyChangeVisitor {
 
-        private String changeType;
+        private ChangeType changeType;
         private OWLObject entityChanged;
 
-        public String getChangeType() {
+        public ChangeType getChangeType() {
             return changeType;
         }
 
-        public Object getEntityChanged() {
+        public OWLObject getEntityChanged() {
             return entityChanged;
         }
 
         @Override
         public void visit(AddAxiom change) {
-            changeType = "Add Axiom";
+            changeType = ChangeType.ADD_AXIOM;
             entityChanged = change.getAxiom();
         }
 
         @Override
         public void visit(RemoveAxiom change) {
-            changeType = "Remove Axiom";
+            changeType = ChangeType.REMOVE_AXIOM;
             entityChanged = change.getAxiom();
         }
 
         @Override
         public void visit(SetOntologyID change) {
-            changeType = "Set Ontology Id";
+            changeType = ChangeType.SET_ONTOLOGY_ID;
             entityChanged = change.getNewOntologyID().getDefaultDocumentIRI().get();
         }
 
         @Override
         public void visit(AddImport change) {
-            changeType = "Add Import";
+            changeType = ChangeType.ADD_IMPORT;
             entityChanged = change.getImportDeclaration().getIRI();
         }
 
         @Override
         public void visit(RemoveImport change) {
-            changeType = "Remove Import";
+            changeType = ChangeType.REMOVE_IMPORT;
             entityChanged = change.getImportDeclaration().getIRI();
         }
 
         @Override
         public void visit(AddOntologyAnnotation change) {
-            changeType = "Add Ontology Annotation";
+            changeType = ChangeType.ADD_ONTOLOGY_ANNOTATION;
             entityChanged = change.getAnnotation();
         }
 
         @Override
         public void visit(RemoveOntologyAnnotation change) {
-            changeType = "Remove Ontology Annotation";
+            changeType = ChangeType.REMOVE_ONTOLOGY_ANNOTATION;
             entityChanged = change.getAnnotation();
         }
     }
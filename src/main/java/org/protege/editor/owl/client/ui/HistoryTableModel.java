@@ -4,7 +4,9 @@ import org.protege.editor.owl.server.versioning.api.ChangeHistory;
 import org.protege.editor.owl.server.versioning.api.DocumentRevision;
 import org.protege.editor.owl.server.versioning.api.RevisionMetadata;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import javax.swing.table.AbstractTableModel;
 
@@ -56,15 +58,58 @@ public class HistoryTableModel extends AbstractTableModel {
         public abstract Object getValue(RevisionMetadata metadata);
     }
 
-    private ChangeHistory changes;
+    private final DocumentRevision baseRevision;
+
+    /*
+     * The metadata of the revisions after the base revision, in revision order
+     */
+    private final List<RevisionMetadata> revisions = new ArrayList<>();
 
     public HistoryTableModel(ChangeHistory changes) {
-        this.changes = changes;
+        this(changes.getBaseRevision());
+        DocumentRevision revision = baseRevision;
+        while (DocumentRevision.distance(revision, changes.getHeadRevision()) > 0) {
+            revision = revision.next(1);
+            revisions.add(changes.getMetadataForRevision(revision));
+        }
+    }
+
+    /**
+     * Creates an empty model, whose revisions are added page by page.
+     */
+    public HistoryTableModel(DocumentRevision baseRevision) {
+        this.baseRevision = baseRevision;
+    }
+
+    /**
+     * Adds the metadata of the revisions that follow the last one of the model.
+     */
+    public void addRevisions(List<RevisionMetadata> metadata) {
+        if (metadata.isEmpty()) {
+            return;
+        }
+        int firstRow = revisions.size();
+        revisions.addAll(metadata);
+        fireTableRowsInserted(firstRow, revisions.size() - 1);
+    }
+
+    /**
+     * Gets the revision shown in the given row of the model.
+     */
+    public DocumentRevision getRevision(int rowIndex) {
+        return baseRevision.next(rowIndex + 1);
+    }
+
+    /**
+     * Gets the last revision of the model, the base revision when it is empty.
+     */
+    public DocumentRevision getLastRevision() {
+        return baseRevision.next(revisions.size());
     }
 
     @Override
     public int getRowCount() {
-        return DocumentRevision.distance(changes.getBaseRevision(), changes.getHeadRevision());
+        return revisions.size();
     }
 
     @Override
@@ -87,7 +132,6 @@ public class HistoryTableModel extends AbstractTableModel {
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
         Column col = Column.values()[columnIndex];
-        RevisionMetadata metadata = changes.getMetadataForRevision(changes.getBaseRevision().next(rowIndex + 1));
-        return col.getValue(metadata);
+        return col.getValue(revisions.get(rowIndex));
     }
 }
@@ -4,17 +4,23 @@ import edu.stanford.protege.metaproject.api.AuthToken;
 import edu.stanford.protege.metaproject.api.ProjectId;
 import org.protege.editor.core.ui.util.JOptionPaneEx;
 import org.protege.editor.owl.OWLEditorKit;
+import org.protege.editor.owl.client.ClientPreferences;
 import org.protege.editor.owl.client.ClientSession;
+import org.protege.editor.owl.client.HistoryCatchUp;
 import org.protege.editor.owl.client.LocalHttpClient;
 import org.protege.editor.owl.client.SessionRecorder;
 import org.protege.editor.owl.client.api.Client;
+import org.protege.editor.owl.client.api.EarlyOpenResult;
 import org.protege.editor.owl.client.api.OpenProjectResult;
+import org.protege.editor.owl.client.api.OperationHandle;
 import org.protege.editor.owl.client.api.exception.LoginTimeoutException;
 import org.protege.editor.owl.client.api.exception.OWLClientException;
+import org.protege.editor.owl.client.util.GuiUtils;
 import org.protege.editor.owl.model.OWLWorkspace;
-import org.protege.editor.owl.server.util.SnapShot;
+import org.protege.editor.owl.server.versioning.api.ChangeHistory;
 import org.protege.editor.owl.server.versioning.api.ServerDocument;
 import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
+import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 
@@ -43,9 +49,6 @@ public class OpenFromServerPanel extends JPanel {
 
     private JTable tblRemoteProjects;
     private ServerTableModel remoteProjectModel;
-    
-    private JProgressBar progressBar;
-    private JDialog dialog;
 
     public OpenFromServerPanel(ClientSession clientSession, OWLEditorKit editorKit) {
         this.clientSession = clientSession;
@@ -96,8 +99,7 @@ public class OpenFromServerPanel extends JPanel {
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
-                    int row = tblRemoteProjects.getSelectedRow();
-                    openOntologyDocument(row);
+                    openSelectedProject();
                 }
             }
         });
@@ -141,67 +143,46 @@ public class OpenFromServerPanel extends JPanel {
     private class OpenActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            int row = tblRemoteProjects.getSelectedRow();
-            
-            progressBar = new JProgressBar();
-            progressBar.setPreferredSize(new Dimension(500, 50));
-            
-            
-            Window parentWindow = SwingUtilities.windowForComponent(tblRemoteProjects);
-            dialog = new JDialog(parentWindow);
-            dialog.setLocationRelativeTo(tblRemoteProjects);
-            
-            dialog.add(progressBar);
-            dialog.pack();
-            dialog.setTitle("Opening project...");
-           
-            class LoadDBWorker extends SwingWorker<String, Void> {
-               protected String doInBackground() {
-            	   //progressBar.setIndeterminate(true);
-            	   progressBar.setMinimum(0);
-            	   progressBar.setMaximum(100);
-            	   progressBar.setVisible(true);
-                   
-                   dialog.setVisible(true);
-                   
-                   openOntologyDocument(row);
-            	   return "Done.";
-               }
-            
-               protected void done() {
-            	   progressBar.setVisible(false);
-                   dialog.setVisible(false);            	   
-               }
+            openSelectedProject();
+        }
+    }
+
+    /*
+     * Opens the selected project in the background, showing its progress in a dialog from
+     * which the opening can be cancelled.
+     */
+    private void openSelectedProject() {
+        int row = tblRemoteProjects.getSelectedRow();
+        OperationHandle handle = new OperationHandle("Open project");
+        OperationProgressDialog progressDialog = new OperationProgressDialog(
+                SwingUtilities.windowForComponent(tblRemoteProjects), "Opening project...", handle, false);
+
+        class LoadDBWorker extends SwingWorker<String, Void> {
+            protected String doInBackground() {
+                try (OperationHandle.Scope scope = handle.attach()) {
+                    openOntologyDocument(row, handle);
+                }
+                finally {
+                    handle.finish();
+                }
+                return "Done.";
             }
-            
-            new LoadDBWorker().execute();
         }
+
+        new LoadDBWorker().execute();
+        progressDialog.setVisible(true);
     }
 
-    protected void openOntologyDocument(int row) {
+    protected void openOntologyDocument(int row, OperationHandle handle) {
         ProjectId pid = remoteProjectModel.getValueAt(row);
         Object pobj = remoteProjectModel.getValueAt(row, 0);
+        OWLOntology unopenedOntology = null;
         try {
             LocalHttpClient httpClient = (LocalHttpClient) clientSession.getActiveClient();
             
-            dialog.setTitle("Opening project on server...");
-            Thread.sleep(1000);
+            handle.setStage("Opening project on server");
             OpenProjectResult openProjectResult = httpClient.openProject(pid);
             ServerDocument serverDocument = openProjectResult.serverDocument;
-
-            progressBar.setValue(10);            
-            dialog.setTitle("Checking Snapshot checksum....");
-            Thread.sleep(1000);
-            Optional<String> clientChecksum = httpClient.getSnapshotChecksum(pid);
-            if (clientChecksum.isPresent() &&
-                openProjectResult.snapshotChecksum.isPresent() &&
-                !clientChecksum.get().equals(openProjectResult.snapshotChecksum.get())) {            	
-            	progressBar.setValue(20);
-            	dialog.setTitle("Retrieving new snapshot....");
-            	Thread.sleep(1000);
-                SnapShot snapshot = httpClient.getSnapShot(pid);
-                httpClient.createLocalSnapShot(snapshot.getOntology(), pid);
-            }
             
             if (serverDocument != null && pobj != null) {
             	String serverConnection = "Server: " + serverDocument.getServerAddress().toString() + " | User: " + httpClient.getUserInfo().getId() 
@@ -210,47 +191,57 @@ public class OpenFromServerPanel extends JPanel {
             	editorKit.getOWLModelManager().setServerConnectionData(serverConnection);
             }
             
-            SessionRecorder.getInstance(this.editorKit).stopRecording();
-            progressBar.setValue(30);
-            dialog.setTitle("Building versioned ontology...");
-            Thread.sleep(1000);
-            VersionedOWLOntology vont = httpClient.buildVersionedOntology(serverDocument, owlManager, pid);
-            SessionRecorder.getInstance(this.editorKit).startRecording();
-            
-            progressBar.setValue(80);
-            dialog.setTitle("Updating menus and components...."); 
-            Thread.sleep(1000);
+            SessionRecorder.getInstance(this.editorKit).stopRecordingOnThisThread();
+            VersionedOWLOntology vont;
+            Optional<ChangeHistory> pendingHistory = Optional.empty();
+            try {
+                // downloads a new snapshot when the local one does not match the server checksum
+                handle.setStage("Building versioned ontology");
+                if (ClientPreferences.getInstance().isOpenEarly()) {
+                    EarlyOpenResult earlyOpenResult = httpClient.buildVersionedOntologyEarly(serverDocument,
+                            owlManager, pid, openProjectResult.snapshotChecksum);
+                    vont = earlyOpenResult.versionedOntology;
+                    pendingHistory = earlyOpenResult.pendingHistory;
+                }
+                else {
+                    vont = httpClient.buildVersionedOntology(serverDocument, owlManager, pid,
+                            openProjectResult.snapshotChecksum);
+                }
+                unopenedOntology = vont.getOntology();
+            }
+            finally {
+                SessionRecorder.getInstance(this.editorKit).startRecordingOnThisThread();
+            }
             
+            handle.setStage("Updating menus and components");
+            handle.checkCancelled(); // last chance, the project is opened from here on
+            if (pendingHistory.isPresent()) {
+                // read-only until the remaining revisions are applied in the background
+                VersionedOWLOntology openedEarly = vont;
+                GuiUtils.invokeAndWait(() -> {
+                    clientSession.setCatchingUp(openedEarly, true);
+                    return null;
+                });
+            }
             clientSession.setActiveProject(pid, vont);
+            unopenedOntology = null; // nothing to undo any more
 
             boolean isWorkflowManager = httpClient.isWorkFlowManager(pid);
             OWLWorkspace workspace = editorKit.getWorkspace();
             //workspace.enableReasonerRestart = isWorkflowManager;
 
-            // update index with possibly new changes from other modelers
-            List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
-            
-            progressBar.setValue(90);
-            dialog.setTitle("Updating search indices...");
-            Thread.sleep(1000);
-            for (List<OWLOntologyChange> c : vont.getChangeHistory().getRevisions().values()) {
-            	for (OWLOntologyChange oc : c) {
-            		changes.add(oc);
-            	}            	            	
+            // update index with the changes from other modelers it has not seen yet
+            handle.setStage("Updating search indices");
+            List<OWLOntologyChange> changes = httpClient.getUnindexedChanges(vont, pid);
+            if (!changes.isEmpty()) {
+                editorKit.getSearchManager().updateIndex(changes);
+            }
+            httpClient.recordIndexedRevision(pid, vont.getHeadRevision());
+            if (pendingHistory.isPresent()) {
+                new HistoryCatchUp(clientSession, httpClient, pid, vont, pendingHistory.get()).start();
             }
             
-          
-            
-            
-            editorKit.getSearchManager().updateIndex(changes);
-            
-            progressBar.setValue(100);
-            dialog.setTitle("Operations complete...");
-            Thread.sleep(1000);
-            
-            
-            
-            closeDialog();
+            SwingUtilities.invokeLater(this::closeDialog);
         }
         catch (LoginTimeoutException e) {
             JOptionPaneEx.showConfirmDialog(editorKit.getWorkspace(), "Open project error",
@@ -262,9 +253,14 @@ public class OpenFromServerPanel extends JPanel {
             }
         }
         catch (Exception e) {
-            JOptionPaneEx.showConfirmDialog(editorKit.getWorkspace(), "Open project error",
-                    new JLabel(e.getMessage()), JOptionPane.ERROR_MESSAGE,
-                    JOptionPane.DEFAULT_OPTION, null);
+            if (unopenedOntology != null) {
+                owlManager.removeOntology(unopenedOntology); // built, but never opened
+            }
+            if (!handle.isCancelled()) {
+                JOptionPaneEx.showConfirmDialog(editorKit.getWorkspace(), "Open project error",
+                        new JLabel(e.getMessage()), JOptionPane.ERROR_MESSAGE,
+                        JOptionPane.DEFAULT_OPTION, null);
+            }
         }
     }
 
@@ -0,0 +1,147 @@
+package org.protege.editor.owl.client.ui;
+
+import org.protege.editor.owl.client.api.OperationHandle;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Shows the progress of a client operation, as reported to its {@link OperationHandle}, with a
+ * button to cancel it. The dialog follows the handle on a timer and closes by itself once the
+ * operation is done, so the operation must always {@link OperationHandle#finish() finish} its
+ * handle, whether it succeeds or not.
+ */
+public class OperationProgressDialog extends JDialog {
+
+    private static final long serialVersionUID = -2467417186402316651L;
+
+    private static final int REFRESH_INTERVAL = 200; // in milliseconds
+
+    /*
+     * Operations that are done within this time complete without showing the dialog
+     */
+    private static final int SHOW_DELAY = 500; // in milliseconds
+
+    private static final int POLL_INTERVAL = 20; // in milliseconds
+
+    private final OperationHandle handle;
+
+    private final JLabel lblStage = new JLabel();
+    private final JLabel lblSummary = new JLabel();
+    private final JProgressBar progressBar = new JProgressBar(0, 1000);
+    private final JButton btnCancel = new JButton("Cancel");
+
+    private final Timer timer;
+
+    public OperationProgressDialog(Window owner, String title, OperationHandle handle, boolean modal) {
+        super(owner, title, modal ? ModalityType.APPLICATION_MODAL : ModalityType.MODELESS);
+        this.handle = handle;
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+
+        JPanel pnlContent = new JPanel(new BorderLayout(0, 6));
+        pnlContent.setBorder(BorderFactory.createEmptyBorder(12, 12, 6, 12));
+        progressBar.setPreferredSize(new Dimension(500, 20));
+        pnlContent.add(lblStage, BorderLayout.NORTH);
+        pnlContent.add(progressBar, BorderLayout.CENTER);
+        pnlContent.add(lblSummary, BorderLayout.SOUTH);
+
+        JPanel pnlButtons = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        btnCancel.addActionListener(e -> {
+            btnCancel.setEnabled(false);
+            handle.cancel();
+            refresh();
+        });
+        pnlButtons.add(btnCancel);
+
+        getContentPane().setLayout(new BorderLayout());
+        getContentPane().add(pnlContent, BorderLayout.CENTER);
+        getContentPane().add(pnlButtons, BorderLayout.SOUTH);
+
+        timer = new Timer(REFRESH_INTERVAL, e -> refresh());
+        refresh();
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        if (visible) {
+            timer.start();
+        }
+        super.setVisible(visible);
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+        super.dispose();
+    }
+
+    private void refresh() {
+        if (handle.isDone()) {
+            dispose();
+            return;
+        }
+        lblStage.setText(handle.isCancelled() ? "Cancelling..." : handle.getStage() + "...");
+        btnCancel.setEnabled(handle.isCancellable() && !handle.isCancelled());
+        lblSummary.setText(handle.getSummary());
+        Optional<Double> fractionDone = handle.getFractionDone();
+        progressBar.setIndeterminate(!fractionDone.isPresent());
+        progressBar.setValue(fractionDone.map(f -> (int) (f * progressBar.getMaximum())).orElse(0));
+    }
+
+    /**
+     * Shows the progress of the operation in a dialog that stays open, next to the workspace,
+     * until the operation is done. Fast operations never show it.
+     */
+    public static void showWhenSlow(Component parent, String title, OperationHandle handle) {
+        Timer showTimer = new Timer(SHOW_DELAY, e -> {
+            if (!handle.isDone()) {
+                new OperationProgressDialog(getWindow(parent), title, handle, false)
+                        .setVisible(true);
+            }
+        });
+        showTimer.setRepeats(false);
+        showTimer.start();
+    }
+
+    /**
+     * Waits for the task that performs the operation, showing its progress in a modal dialog
+     * if it takes a while. Meant to be called on the event dispatch thread, which keeps
+     * dispatching events in the meantime, as the task may have work to do on it, e.g., applying
+     * changes to the ontology.
+     */
+    public static <T> T waitFor(Component parent, String title, OperationHandle handle, Future<T> task)
+            throws InterruptedException, ExecutionException {
+        if (!task.isDone()) {
+            SecondaryLoop loop = Toolkit.getDefaultToolkit().getSystemEventQueue().createSecondaryLoop();
+            long showTime = System.currentTimeMillis() + SHOW_DELAY;
+            Timer timer = new Timer(POLL_INTERVAL, null);
+            timer.addActionListener(e -> {
+                if (task.isDone()) {
+                    timer.stop();
+                    loop.exit();
+                }
+                else if (System.currentTimeMillis() >= showTime) {
+                    timer.stop();
+                    if (!handle.isDone()) {
+                        // blocks until the refresh timer sees the operation done and closes the dialog
+                        new OperationProgressDialog(getWindow(parent), title, handle, true)
+                                .setVisible(true);
+                    }
+                    loop.exit();
+                }
+            });
+            timer.start();
+            loop.enter();
+        }
+        return task.get();
+    }
+
+    private static Window getWindow(Component parent) {
+        return parent instanceof Window ? (Window) parent : SwingUtilities.getWindowAncestor(parent);
+    }
+}
@@ -0,0 +1,159 @@
+package org.protege.editor.owl.client.ui;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import org.protege.editor.owl.client.LocalHttpClient;
+import org.protege.editor.owl.client.api.exception.AuthorizationException;
+import org.protege.editor.owl.client.api.exception.ClientRequestException;
+import org.protege.editor.owl.server.versioning.ChangeHistoryUtils;
+import org.protege.editor.owl.server.versioning.api.ChangeHistory;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.protege.editor.owl.server.versioning.api.RevisionMetadata;
+import org.protege.editor.owl.server.versioning.api.VersionedOWLOntology;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Supplies the revisions of a project to the change history panel, a page of metadata at a
+ * time, and the changes of a revision only when it is viewed.
+ *
+ * The revisions up to the local head are taken from the history of the versioned ontology,
+ * which the client already holds, through an index by revision that is built on first use.
+ * Only the revisions committed since are asked from the server: their metadata by page and
+ * their changes one revision at a time, keeping the most recently viewed ones in an LRU cache.
+ *
+ * The rows the change list shows for a revision are prepared once and kept in an LRU cache as
+ * well, so that selecting many revisions, or selecting them again, only concatenates rows.
+ */
+public class RevisionHistorySource {
+
+    public static final int PAGE_SIZE = 500; // in revisions
+
+    private static final int CACHE_SIZE = 64; // in revisions
+
+    private static final int ROW_CACHE_SIZE = 1024; // in revisions
+
+    private final LocalHttpClient client;
+    private final VersionedOWLOntology vont;
+    private final ProjectId projectId;
+    private final OWLOntology ontology;
+
+    private final ChangeHistory localHistory;
+    private final DocumentRevision localHead;
+
+    /*
+     * The changes of the local revisions, at the distance of their revision from the base
+     * revision minus one
+     */
+    private List<List<OWLOntologyChange>> localChanges;
+
+    private final Map<Integer, List<OWLOntologyChange>> remoteChanges = createLruCache(CACHE_SIZE);
+
+    private final Map<Integer, List<ChangeListTableModel.Row>> rows = createLruCache(ROW_CACHE_SIZE);
+
+    public RevisionHistorySource(LocalHttpClient client, VersionedOWLOntology vont, ProjectId projectId) {
+        this.client = client;
+        this.vont = vont;
+        this.projectId = projectId;
+        this.ontology = vont.getOntology();
+        this.localHistory = vont.getChangeHistory();
+        this.localHead = localHistory.getHeadRevision();
+    }
+
+    public DocumentRevision getBaseRevision() {
+        return localHistory.getBaseRevision();
+    }
+
+    /**
+     * Gets the metadata of at most <code>count</code> revisions after the given one, in revision
+     * order. Fewer are returned only when the head revision of the server has been reached.
+     */
+    public List<RevisionMetadata> getMetadata(DocumentRevision start, int count)
+            throws AuthorizationException, ClientRequestException {
+        List<RevisionMetadata> metadata = new ArrayList<>(count);
+        DocumentRevision revision = start;
+        while (metadata.size() < count && DocumentRevision.distance(revision, localHead) > 0) {
+            revision = revision.next(1);
+            metadata.add(localHistory.getMetadataForRevision(revision));
+        }
+        if (metadata.size() < count) {
+            metadata.addAll(client.getRevisionMetadata(vont, projectId, revision, count - metadata.size()));
+        }
+        return metadata;
+    }
+
+    /**
+     * Gets the changes of the given revision.
+     */
+    public List<OWLOntologyChange> getChanges(DocumentRevision revision)
+            throws AuthorizationException, ClientRequestException {
+        DocumentRevision base = getBaseRevision();
+        int index = DocumentRevision.distance(base, revision) - 1;
+        if (DocumentRevision.distance(revision, localHead) >= 0) {
+            return getLocalChanges().get(index);
+        }
+        int key = DocumentRevision.distance(DocumentRevision.START_REVISION, revision);
+        List<OWLOntologyChange> changes = remoteChanges.get(key);
+        if (changes == null) {
+            ChangeHistory revisionHistory = client.getRevisions(vont, projectId, base.next(index), 1);
+            changes = ChangeHistoryUtils.getOntologyChanges(revisionHistory, ontology);
+            remoteChanges.put(key, changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Gets the rows the change list shows for the given revision, one per change.
+     */
+    public List<ChangeListTableModel.Row> getRows(DocumentRevision revision)
+            throws AuthorizationException, ClientRequestException {
+        int key = DocumentRevision.distance(DocumentRevision.START_REVISION, revision);
+        List<ChangeListTableModel.Row> revisionRows = rows.get(key);
+        if (revisionRows == null) {
+            List<OWLOntologyChange> changes = getChanges(revision);
+            revisionRows = new ArrayList<>(changes.size());
+            for (OWLOntologyChange change : changes) {
+                revisionRows.add(ChangeListTableModel.Row.of(change));
+            }
+            revisionRows = Collections.unmodifiableList(revisionRows);
+            rows.put(key, revisionRows);
+        }
+        return revisionRows;
+    }
+
+    /*
+     * Indexes the changes of the local history by revision, in one pass over the history.
+     */
+    private synchronized List<List<OWLOntologyChange>> getLocalChanges() {
+        if (localChanges == null) {
+            DocumentRevision base = getBaseRevision();
+            int revisionCount = DocumentRevision.distance(base, localHead);
+            List<List<OWLOntologyChange>> index = new ArrayList<>(Collections.nCopies(revisionCount,
+                    Collections.<OWLOntologyChange>emptyList()));
+            for (Map.Entry<DocumentRevision, List<OWLOntologyChange>> revision : localHistory.getRevisions().entrySet()) {
+                int position = DocumentRevision.distance(base, revision.getKey()) - 1;
+                if (position >= 0 && position < revisionCount) {
+                    index.set(position, revision.getValue());
+                }
+            }
+            localChanges = index;
+        }
+        return localChanges;
+    }
+
+    private static <V> Map<Integer, V> createLruCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<Integer, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2283620932147361027L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+}
@@ -15,7 +15,6 @@ import javax.swing.JTable;
 import javax.swing.SwingUtilities;
 
 import org.protege.editor.owl.OWLEditorKit;
-import org.protege.editor.owl.ui.renderer.OWLCellRenderer;
 
 import org.semanticweb.owlapi.model.OWLObject;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
@@ -29,13 +28,16 @@ public class UncommittedChangesPanel extends JPanel {
 
     private static final long serialVersionUID = -7076342089755329250L;
 
+    private final CachedRenderingCellRenderer renderer;
+
     public UncommittedChangesPanel(List<OWLOntologyChange> uncommittedChanges, OWLEditorKit editorKit) {
         setLayout(new BorderLayout());
         setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
 
         ChangeListTableModel tableModel = new ChangeListTableModel(uncommittedChanges);
         JTable table = new JTable(tableModel);
-        table.setDefaultRenderer(OWLObject.class, new OWLCellRenderer(editorKit));
+        renderer = new CachedRenderingCellRenderer(editorKit);
+        table.setDefaultRenderer(OWLObject.class, renderer);
         add(new JScrollPane(table), BorderLayout.CENTER);
 
         JPanel buttonPanel = new JPanel();
@@ -53,6 +55,12 @@ public class UncommittedChangesPanel extends JPanel {
         add(buttonPanel, BorderLayout.SOUTH);
     }
 
+    @Override
+    public void removeNotify() {
+        renderer.dispose();
+        super.removeNotify();
+    }
+
     private void closeDialog() {
         Window window = SwingUtilities.getWindowAncestor(UncommittedChangesPanel.this);
         window.setVisible(false);
@@ -0,0 +1,371 @@
+package org.protege.editor.owl.client.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the client-server work of the client on separate lanes, each with its own threads, so
+ * that slow work on one lane never queues up in front of the work on another: a snapshot or
+ * history download on the bulk lane, or an auto-update tick on the background lane, does not
+ * delay a commit on the interactive lane.
+ *
+ * Tasks that apply changes to an open ontology, or move its head revision, must do so while
+ * holding the {@link #getSyncLock() sync lock}. The lanes run in parallel, so the lock is what
+ * keeps an update and a commit of the same ontology from interleaving. Network transfers
+ * should be done before taking the lock wherever possible.
+ */
+public class ClientScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientScheduler.class);
+
+    public enum Lane {
+
+        /** User-triggered operations the user is waiting for, e.g., commit and update */
+        INTERACTIVE("Interactive", 1, Thread.NORM_PRIORITY + 1),
+
+        /** Synchronization nobody is waiting for, e.g., auto-update */
+        BACKGROUND("Background Sync", 1, Thread.NORM_PRIORITY - 1),
+
+        /** Large transfers, e.g., snapshots and change histories */
+        BULK("Bulk Transfer", 2, Thread.MIN_PRIORITY),
+
+        /** Downloads of projects ahead of their first open, kept apart from the bulk transfers */
+        PREFETCH("Prefetch", 1, Thread.MIN_PRIORITY);
+
+        private final String displayName;
+        private final int parallelism;
+        private final int priority;
+
+        Lane(String displayName, int parallelism, int priority) {
+            this.displayName = displayName;
+            this.parallelism = parallelism;
+            this.priority = priority;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * Gets the maximum number of tasks of the lane that run at the same time.
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        /**
+         * Gets the priority of the threads of the lane.
+         */
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    private static ClientScheduler instance;
+
+    private final Map<Lane, LaneExecutor> executors = new EnumMap<>(Lane.class);
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    public static synchronized ClientScheduler getInstance() {
+        if (instance == null) {
+            instance = new ClientScheduler();
+        }
+        return instance;
+    }
+
+    private ClientScheduler() {
+        for (Lane lane : Lane.values()) {
+            executors.put(lane, new LaneExecutor(lane));
+        }
+    }
+
+    public Future<?> submit(Lane lane, Runnable task) {
+        return executors.get(lane).submit(task);
+    }
+
+    public <T> Future<T> submit(Lane lane, Callable<T> task) {
+        return executors.get(lane).submit(task);
+    }
+
+    public ScheduledFuture<?> schedule(Lane lane, Runnable task, long delay, TimeUnit unit) {
+        return executors.get(lane).schedule(task, delay, unit);
+    }
+
+    public <T> ScheduledFuture<T> schedule(Lane lane, Callable<T> task, long delay, TimeUnit unit) {
+        return executors.get(lane).schedule(task, delay, unit);
+    }
+
+    /**
+     * Runs the task every period, starting one period from now.
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Lane lane, Runnable task, long period, TimeUnit unit) {
+        return executors.get(lane).scheduleAtFixedRate(task, period, period, unit);
+    }
+
+    /**
+     * Cancels all the tasks of the lane, periodic ones included. Queued tasks are dropped and
+     * running ones are interrupted.
+     *
+     * @return the number of tasks that were cancelled
+     */
+    public int cancelAll(Lane lane) {
+        int count = 0;
+        for (Future<?> task : executors.get(lane).tasks) {
+            if (task.cancel(true)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            logger.info(String.format("Cancelled %d task(s) on the %s lane", count, lane.getDisplayName()));
+        }
+        return count;
+    }
+
+    /**
+     * Gets the lock that serializes the changes to the open ontologies and their head revisions.
+     */
+    public Lock getSyncLock() {
+        return syncLock;
+    }
+
+    public LaneMetrics getMetrics(Lane lane) {
+        return executors.get(lane).getMetrics();
+    }
+
+    /**
+     * A snapshot of the counters of a lane.
+     */
+    public static class LaneMetrics {
+
+        private final Lane lane;
+        private final long submitted;
+        private final long completed;
+        private final long failed;
+        private final long cancelled;
+        private final int queued;
+        private final int active;
+        private final long busyMillis;
+        private final long maxWaitMillis;
+
+        LaneMetrics(Lane lane, long submitted, long completed, long failed, long cancelled, int queued, int active,
+                long busyMillis, long maxWaitMillis) {
+            this.lane = lane;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.cancelled = cancelled;
+            this.queued = queued;
+            this.active = active;
+            this.busyMillis = busyMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public Lane getLane() {
+            return lane;
+        }
+
+        public long getSubmittedCount() {
+            return submitted;
+        }
+
+        public long getCompletedCount() {
+            return completed;
+        }
+
+        public long getFailedCount() {
+            return failed;
+        }
+
+        public long getCancelledCount() {
+            return cancelled;
+        }
+
+        /**
+         * Gets the number of tasks waiting for a thread or for their scheduled time.
+         */
+        public int getQueuedCount() {
+            return queued;
+        }
+
+        public int getActiveCount() {
+            return active;
+        }
+
+        /**
+         * Gets the total time spent running the tasks of the lane.
+         */
+        public long getBusyMillis() {
+            return busyMillis;
+        }
+
+        /**
+         * Gets the longest time a task was ready to run but had to wait for a thread.
+         */
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s lane: %d submitted, %d completed, %d failed, %d cancelled, %d queued, "
+                    + "%d active, %d ms busy, %d ms max wait", lane.getDisplayName(), submitted, completed, failed,
+                    cancelled, queued, active, busyMillis, maxWaitMillis);
+        }
+    }
+
+    /*
+     * The threads of a lane, counting the tasks that pass through them.
+     */
+    private static class LaneExecutor extends ScheduledThreadPoolExecutor {
+
+        private final Lane lane;
+
+        private final Set<LaneTask<?>> tasks = ConcurrentHashMap.newKeySet();
+
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong cancelled = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong maxWaitMillis = new AtomicLong();
+
+        LaneExecutor(Lane lane) {
+            super(lane.getParallelism(), r -> {
+                Thread th = new Thread(r, "Client-Server Communications (" + lane.getDisplayName() + ")");
+                th.setDaemon(true);
+                th.setPriority(lane.getPriority());
+                return th;
+            });
+            this.lane = lane;
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable, RunnableScheduledFuture<V> task) {
+            return track(task);
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> callable, RunnableScheduledFuture<V> task) {
+            return track(task);
+        }
+
+        private <V> RunnableScheduledFuture<V> track(RunnableScheduledFuture<V> task) {
+            LaneTask<V> laneTask = new LaneTask<>(this, task);
+            submitted.incrementAndGet();
+            tasks.add(laneTask);
+            return laneTask;
+        }
+
+        void taskEnded(LaneTask<?> task) {
+            if (!tasks.remove(task)) {
+                return;
+            }
+            if (task.isCancelled()) {
+                cancelled.incrementAndGet();
+                return;
+            }
+            try {
+                task.get();
+                completed.incrementAndGet();
+            }
+            catch (ExecutionException e) {
+                failed.incrementAndGet();
+                logger.warn("A task on the " + lane.getDisplayName() + " lane failed", e.getCause());
+            }
+            catch (InterruptedException | CancellationException e) {
+                // NO-OP: the task is done, it cannot block or be cancelled any more
+            }
+        }
+
+        LaneMetrics getMetrics() {
+            return new LaneMetrics(lane, submitted.get(), completed.get(), failed.get(), cancelled.get(),
+                    getQueue().size(), getActiveCount(), TimeUnit.NANOSECONDS.toMillis(busyNanos.get()),
+                    maxWaitMillis.get());
+        }
+    }
+
+    /*
+     * A task of a lane, reporting back to it when it runs and when it ends.
+     */
+    private static class LaneTask<V> implements RunnableScheduledFuture<V> {
+
+        private final LaneExecutor executor;
+        private final RunnableScheduledFuture<V> task;
+
+        LaneTask(LaneExecutor executor, RunnableScheduledFuture<V> task) {
+            this.executor = executor;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            // how late the task starts, i.e., how long it waited for a thread of the lane
+            long wait = -task.getDelay(TimeUnit.MILLISECONDS);
+            executor.maxWaitMillis.accumulateAndGet(wait, Math::max);
+            long startTime = System.nanoTime();
+            try {
+                task.run();
+            }
+            finally {
+                executor.busyNanos.addAndGet(System.nanoTime() - startTime);
+                if (task.isDone()) {
+                    executor.taskEnded(this);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = task.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                executor.remove(this);
+                executor.taskEnded(this);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return task.isPeriodic();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return task.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return task.compareTo(other instanceof LaneTask ? ((LaneTask<?>) other).task : other);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+    }
+}
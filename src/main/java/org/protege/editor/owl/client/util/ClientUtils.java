@@ -3,18 +3,21 @@ package org.protege.editor.owl.client.util;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.protege.editor.owl.client.ClientSession;
 import org.protege.editor.owl.client.SessionRecorder;
 import org.protege.editor.owl.client.api.Client;
+import org.protege.editor.owl.client.api.OperationHandle;
 import org.protege.editor.owl.client.event.ClientSessionListener;
 import org.protege.editor.owl.model.ChangeListMinimizer;
 import org.protege.editor.owl.model.history.HistoryManager;
 import org.protege.editor.owl.server.versioning.ChangeHistoryUtils;
 import org.protege.editor.owl.server.versioning.Commit;
 import org.protege.editor.owl.server.versioning.api.ChangeHistory;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
 import org.protege.editor.owl.server.versioning.api.RevisionMetadata;
 import org.semanticweb.owlapi.model.AddImport;
 import org.semanticweb.owlapi.model.MissingImportHandlingStrategy;
@@ -32,6 +35,8 @@ import org.semanticweb.owlapi.model.OWLOntologyManager;
  */
 public class ClientUtils {
 
+    private static final int REPLAY_BATCH_SIZE = 1000; // in revisions
+
     /**
      * Perform logout from the Protege client-server application.
      *
@@ -90,23 +95,71 @@ public class ClientUtils {
     
     
    
+    /**
+     * Appends the revisions of <code>newChanges</code> to <code>changeHistory</code>. The base
+     * revision of the new changes is expected to be the head revision of the change history.
+     *
+     * @param changeHistory
+     *          The change history to extend
+     * @param newChanges
+     *          The revisions that follow the head of the change history
+     */
+    public static void appendChangeHistory(ChangeHistory changeHistory, ChangeHistory newChanges) {
+        for (DocumentRevision revision : newChanges.getRevisions().keySet()) {
+            changeHistory.addRevision(newChanges.getMetadataForRevision(revision),
+                    newChanges.getChangesForRevision(revision));
+        }
+    }
+
     /*
      * Private utility methods
      */
 
+    /**
+     * Applies the revisions of the change history to the ontology. Long histories are applied
+     * in batches of revisions, each reported to the current operation handle, if any; when the
+     * operation is cancelled the replay stops between two batches.
+     */
     public static void updateOntology(OWLOntology placeholder, ChangeHistory changeHistory, OWLOntologyManager manager) {
-    	
-    	List<OWLOntologyChange> changes = ChangeHistoryUtils.getOntologyChanges(changeHistory, placeholder);
-        
-        manager.applyChanges(changes);
-       
-        fixMissingImports(placeholder, changes, manager);
+        Optional<OperationHandle> handle = OperationHandle.current();
+        List<DocumentRevision> revisions = new ArrayList<>(changeHistory.getRevisions().keySet());
+        handle.ifPresent(h -> h.addRevisionsExpected(revisions.size()));
+        DocumentRevision start = changeHistory.getBaseRevision();
+        for (int from = 0; from < revisions.size(); from += REPLAY_BATCH_SIZE) {
+            handle.ifPresent(OperationHandle::checkCancelled);
+            int count = Math.min(REPLAY_BATCH_SIZE, revisions.size() - from);
+            ChangeHistory batch = (count == revisions.size())
+                    ? changeHistory
+                    : ChangeHistoryUtils.crop(changeHistory, start, count);
+            List<OWLOntologyChange> changes = ChangeHistoryUtils.getOntologyChanges(batch, placeholder);
+            manager.applyChanges(changes);
+            fixMissingImports(placeholder, changes, manager);
+            start = revisions.get(from + count - 1);
+            handle.ifPresent(h -> h.addRevisionsApplied(count));
+        }
     }
 
-    private static void fixMissingImports(OWLOntology ontology, List<OWLOntologyChange> changes, OWLOntologyManager manager) {
+    /**
+     * Loads the imports declared by the ontology that are not loaded yet, e.g., after the
+     * ontology was read from a local checkpoint rather than built by replaying its history.
+     */
+    public static void loadMissingImports(OWLOntology ontology, OWLOntologyManager manager) {
+        OWLOntologyLoaderConfiguration configuration = getImportLoaderConfiguration();
+        for (OWLImportsDeclaration importDecl : new TreeSet<>(ontology.getImportsDeclarations())) {
+            if (manager.getImportedOntology(importDecl) == null) {
+                manager.makeLoadImportRequest(importDecl, configuration);
+            }
+        }
+    }
+
+    private static OWLOntologyLoaderConfiguration getImportLoaderConfiguration() {
         OWLOntologyLoaderConfiguration configuration = new OWLOntologyLoaderConfiguration();
         configuration = configuration.setMissingImportHandlingStrategy(MissingImportHandlingStrategy.SILENT);
-        configuration = configuration.setMissingOntologyHeaderStrategy(MissingOntologyHeaderStrategy.IMPORT_GRAPH);
+        return configuration.setMissingOntologyHeaderStrategy(MissingOntologyHeaderStrategy.IMPORT_GRAPH);
+    }
+
+    private static void fixMissingImports(OWLOntology ontology, List<OWLOntologyChange> changes, OWLOntologyManager manager) {
+        OWLOntologyLoaderConfiguration configuration = getImportLoaderConfiguration();
         
         final Set<OWLImportsDeclaration> declaredImports = ontology.getImportsDeclarations();
         Set<OWLImportsDeclaration> missingImports = new TreeSet<OWLImportsDeclaration>();
@@ -0,0 +1,112 @@
+package org.protege.editor.owl.client.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges bursts of notifications into one. The first signal opens a window of the configured
+ * length; all signals that arrive before the window closes are delivered together, as a single
+ * notification carrying the number of merged signals and the total number of changes they
+ * reported.
+ *
+ * Delivery never happens on the thread that signals: the window is timed on a dedicated
+ * thread and the notification is handed to the delivery executor (e.g., the Swing event
+ * dispatch thread) once it closes.
+ */
+public class CoalescingDispatcher {
+
+    /**
+     * Receives the merged notifications.
+     */
+    public interface Delivery {
+
+        void deliver(int eventCount, int changeCount);
+    }
+
+    private final ScheduledExecutorService timer;
+    private final Executor deliveryExecutor;
+    private final Delivery delivery;
+
+    private volatile long windowMillis;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+
+    private final AtomicLong signalledEvents = new AtomicLong();
+    private final AtomicLong deliveredEvents = new AtomicLong();
+    private final AtomicLong suppressedEvents = new AtomicLong();
+
+    public CoalescingDispatcher(String name, long windowMillis, Executor deliveryExecutor, Delivery delivery) {
+        this.windowMillis = windowMillis;
+        this.deliveryExecutor = deliveryExecutor;
+        this.delivery = delivery;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread th = new Thread(r, name);
+            th.setDaemon(true);
+            return th;
+        });
+    }
+
+    public void setWindow(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public long getWindow() {
+        return windowMillis;
+    }
+
+    /**
+     * Signals a state change that reported the given number of changes.
+     */
+    public void signal(int changeCount) {
+        signalledEvents.incrementAndGet();
+        pendingChanges.addAndGet(changeCount);
+        pendingEvents.incrementAndGet();
+        if (scheduled.compareAndSet(false, true)) {
+            timer.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        scheduled.set(false); // signals from now on open a new window
+        int events = pendingEvents.getAndSet(0);
+        int changes = pendingChanges.getAndSet(0);
+        if (events == 0) {
+            return;
+        }
+        deliveredEvents.incrementAndGet();
+        suppressedEvents.addAndGet(events - 1);
+        deliveryExecutor.execute(() -> delivery.deliver(events, changes));
+    }
+
+    /**
+     * Gets the number of signals received so far.
+     */
+    public long getSignalledCount() {
+        return signalledEvents.get();
+    }
+
+    /**
+     * Gets the number of notifications delivered so far.
+     */
+    public long getDeliveredCount() {
+        return deliveredEvents.get();
+    }
+
+    /**
+     * Gets the number of signals that were merged into another one instead of being delivered.
+     */
+    public long getSuppressedCount() {
+        return suppressedEvents.get();
+    }
+
+    public void dispose() {
+        timer.shutdownNow();
+    }
+}
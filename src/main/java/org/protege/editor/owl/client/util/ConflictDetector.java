@@ -0,0 +1,190 @@
+package org.protege.editor.owl.client.util;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the local changes that conflict with incoming remote changes. A local change conflicts
+ * when a remote change has the same signature, i.e., is about the same OWL object (axiom,
+ * import declaration or ontology annotation), or when both sides change the ontology ID.
+ *
+ * The local changes are indexed once by their signature. Remote changes are probed against
+ * the index, so the remote side, usually by far the larger one, needs no collections of its
+ * own. The index is kept and reused as long as the same list of local changes is passed in
+ * again, e.g., the shared snapshot returned by the session recorder between two update ticks.
+ *
+ * Conflicts are reported in a fixed order: the ontology ID change first, then the import,
+ * ontology annotation and axiom changes, each in the order of the local changes.
+ *
+ * Large remote change lists are split into parts that are probed in parallel on the fork-join
+ * pool. The parts only read the local index, and their hits are merged by position in the
+ * index, so the outcome and its order do not depend on how the work was split.
+ */
+public class ConflictDetector {
+
+    private static final Object ONTOLOGY_ID = new Object();
+
+    /*
+     * Remote change lists smaller than this are probed on the calling thread
+     */
+    private static final int PARALLEL_THRESHOLD = 10000;
+
+    private static final int MIN_PART_SIZE = 2500;
+
+    private final ForkJoinPool pool;
+
+    private LocalIndex localIndex;
+
+    public ConflictDetector() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ConflictDetector(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the local changes that conflict with the given remote changes.
+     */
+    public synchronized List<OWLOntologyChange> getConflicts(List<OWLOntologyChange> localChanges,
+            List<OWLOntologyChange> remoteChanges) {
+        if (localChanges.isEmpty() || remoteChanges.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (localIndex == null || localIndex.source != localChanges) {
+            localIndex = new LocalIndex(localChanges);
+        }
+        BitSet hits;
+        if (remoteChanges.size() < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            hits = probe(localIndex, remoteChanges, 0, remoteChanges.size());
+        }
+        else {
+            int partSize = Math.max(MIN_PART_SIZE, remoteChanges.size() / (pool.getParallelism() * 4));
+            hits = pool.invoke(new ProbeTask(localIndex, remoteChanges, 0, remoteChanges.size(), partSize));
+        }
+        return localIndex.getChanges(hits);
+    }
+
+    /*
+     * Probes a range of the remote changes, splitting it in halves down to the part size.
+     */
+    private static class ProbeTask extends RecursiveTask<BitSet> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LocalIndex index;
+        private final List<OWLOntologyChange> remoteChanges;
+        private final int from;
+        private final int to;
+        private final int partSize;
+
+        ProbeTask(LocalIndex index, List<OWLOntologyChange> remoteChanges, int from, int to, int partSize) {
+            this.index = index;
+            this.remoteChanges = remoteChanges;
+            this.from = from;
+            this.to = to;
+            this.partSize = partSize;
+        }
+
+        @Override
+        protected BitSet compute() {
+            if (to - from <= partSize) {
+                return probe(index, remoteChanges, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ProbeTask upper = new ProbeTask(index, remoteChanges, middle, to, partSize);
+            upper.fork();
+            BitSet hits = new ProbeTask(index, remoteChanges, from, middle, partSize).compute();
+            hits.or(upper.join());
+            return hits;
+        }
+    }
+
+    /*
+     * Gets the positions, in the local index, of the changes that conflict with the remote
+     * changes in the given range.
+     */
+    static BitSet probe(LocalIndex index, List<OWLOntologyChange> remoteChanges, int from, int to) {
+        BitSet hits = new BitSet(index.size());
+        for (OWLOntologyChange change : remoteChanges.subList(from, to)) {
+            Integer position = index.positions.get(getSignature(change));
+            if (position != null) {
+                hits.set(position);
+            }
+        }
+        return hits;
+    }
+
+    private static Object getSignature(OWLOntologyChange change) {
+        if (change instanceof OWLAxiomChange) {
+            return ((OWLAxiomChange) change).getAxiom();
+        }
+        else if (change instanceof ImportChange) {
+            return ((ImportChange) change).getImportDeclaration();
+        }
+        else if (change instanceof AnnotationChange) {
+            return ((AnnotationChange) change).getAnnotation();
+        }
+        else if (change instanceof SetOntologyID) {
+            return ONTOLOGY_ID;
+        }
+        return change;
+    }
+
+    private static int getCategory(Object signature) {
+        if (signature == ONTOLOGY_ID) {
+            return 0;
+        }
+        else if (signature instanceof OWLImportsDeclaration) {
+            return 1;
+        }
+        else if (signature instanceof OWLAnnotation) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /*
+     * The last local change for each signature, in report order. The index is not changed once
+     * built.
+     */
+    static final class LocalIndex {
+
+        private final List<OWLOntologyChange> source;
+        private final List<OWLOntologyChange> changes = new ArrayList<>();
+        private final Map<Object, Integer> positions = new HashMap<>();
+
+        LocalIndex(List<OWLOntologyChange> localChanges) {
+            source = localChanges;
+            List<Map<Object, OWLOntologyChange>> categories = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                categories.add(new LinkedHashMap<>());
+            }
+            for (OWLOntologyChange change : localChanges) {
+                Object signature = getSignature(change);
+                categories.get(getCategory(signature)).put(signature, change);
+            }
+            for (Map<Object, OWLOntologyChange> category : categories) {
+                for (Map.Entry<Object, OWLOntologyChange> entry : category.entrySet()) {
+                    positions.put(entry.getKey(), changes.size());
+                    changes.add(entry.getValue());
+                }
+            }
+        }
+
+        int size() {
+            return changes.size();
+        }
+
+        List<OWLOntologyChange> getChanges(BitSet positions) {
+            List<OWLOntologyChange> selected = new ArrayList<>(positions.cardinality());
+            for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+                selected.add(changes.get(i));
+            }
+            return selected;
+        }
+    }
+}
@@ -15,8 +15,13 @@ import java.io.IOException;
 import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
 
 /**
  * @author Rafael Gonçalves <br>
@@ -101,4 +106,53 @@ public class GuiUtils {
     public static String getShortenedFormattedDate(Date date) {
         return new SimpleDateFormat("MMM d yyyy HH:mm").format(date);
     }
+
+    /**
+     * Runs the task on the event dispatch thread and waits for its result, or runs it right away
+     * when called on the event dispatch thread. Whatever the task throws is thrown on to the caller.
+     * If the waiting thread is interrupted before the task has started, the task is dropped; once
+     * it has started, the caller waits for it to finish either way, so that it never runs on after
+     * the caller has given up, e.g., on a lock.
+     */
+    public static <T> T invokeAndWait(Callable<T> task) throws Exception {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return task.call();
+        }
+        AtomicBoolean started = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        SwingUtilities.invokeLater(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return; // dropped by the waiting thread
+            }
+            try {
+                result.set(task.call());
+            }
+            catch (Throwable t) {
+                failure.set(t);
+            }
+            finally {
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        }
+        catch (InterruptedException e) {
+            if (started.compareAndSet(false, true)) {
+                throw e;
+            }
+            awaitUninterruptibly(done);
+            Thread.currentThread().interrupt();
+        }
+        Throwable t = failure.get();
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        }
+        else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return result.get();
+    }
 }
@@ -0,0 +1,79 @@
+package org.protege.editor.owl.client.util;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Wraps another request body and gzip-compresses it while it is written to
+ * the connection. The caller is responsible for adding the matching
+ * <code>Content-Encoding: gzip</code> request header.
+ *
+ * The sink the body is written to is left open, it belongs to the caller, and
+ * may be wrapped by an interceptor that still has to flush it. With debug
+ * logging on, the plain and compressed sizes and the time taken are logged
+ * for each body written.
+ */
+public class GzipRequestBody extends RequestBody {
+
+    private static final Logger logger = LoggerFactory.getLogger(GzipRequestBody.class);
+
+    private final RequestBody delegate;
+
+    public GzipRequestBody(RequestBody delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return -1; // the compressed size is not known in advance
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        long startTime = System.currentTimeMillis();
+        CountingSink compressed = new CountingSink(sink) {
+            @Override
+            public void close() throws IOException {
+                flush(); // the gzip trailer is written, the caller closes the sink itself
+            }
+        };
+        CountingSink plain = new CountingSink(new GzipSink(compressed));
+        BufferedSink gzipSink = Okio.buffer(plain);
+        delegate.writeTo(gzipSink);
+        gzipSink.close();
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Compressed request body from %d to %d bytes in %d ms",
+                    plain.count, compressed.count, System.currentTimeMillis() - startTime));
+        }
+    }
+
+    private static class CountingSink extends ForwardingSink {
+
+        private long count;
+
+        CountingSink(Sink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            count += byteCount;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.protege.editor.owl.client.util;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * A request body that writes its arguments with Java serialization directly
+ * into the connection sink. Unlike copying a <code>ByteArrayOutputStream</code>
+ * into a byte array, the serialized form is never held in memory, so sending
+ * a large commit bundle does not need more heap than the bundle itself.
+ *
+ * The arguments are serialized again each time {@link #writeTo(BufferedSink)}
+ * is called, which keeps the body replayable if OkHttp retries the request.
+ */
+public class ObjectStreamRequestBody extends RequestBody {
+
+    private final MediaType contentType;
+    private final Object[] arguments;
+
+    private Runnable writtenAction = () -> {};
+
+    public ObjectStreamRequestBody(MediaType contentType, Object... arguments) {
+        this.contentType = contentType;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Sets what to do each time the arguments have been written in full, e.g., to mark the point
+     * from which the request can no longer be taken back. The action may fail the request by
+     * throwing a runtime exception.
+     */
+    public ObjectStreamRequestBody whenWritten(Runnable action) {
+        this.writtenAction = action;
+        return this;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1; // unknown until written, the request is sent chunked
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        OutputStream out = sink.outputStream();
+        ObjectOutputStream os = new ObjectOutputStream(out);
+        for (Object argument : arguments) {
+            os.writeObject(argument);
+        }
+        os.flush(); // closing is left to OkHttp, it owns the sink
+        writtenAction.run();
+    }
+}
@@ -0,0 +1,121 @@
+package org.protege.editor.owl.client.util;
+
+import okhttp3.*;
+import okio.*;
+import org.protege.editor.owl.client.api.OperationHandle;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Counts the bytes of the requests that are tagged with an {@link OperationHandle} and
+ * reports them to it, the request body as it is sent and the response body as it is read.
+ * Installed as a network interceptor, so the bytes on the wire are counted, i.e., before
+ * the response is inflated. The transfer is also slowed down to the bandwidth limit of the
+ * operation, if it has one.
+ */
+public class ProgressInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!(request.tag() instanceof OperationHandle)) {
+            return chain.proceed(request);
+        }
+        OperationHandle handle = (OperationHandle) request.tag();
+        if (request.body() != null) {
+            request = request.newBuilder()
+                    .method(request.method(), new CountingRequestBody(request.body(), handle))
+                    .build();
+        }
+        Response response = chain.proceed(request);
+        if (response.body() == null) {
+            return response;
+        }
+        if (response.body().contentLength() > 0) {
+            handle.addBytesExpected(response.body().contentLength());
+        }
+        return response.newBuilder().body(new CountingResponseBody(response.body(), handle)).build();
+    }
+
+    private static void throttle(OperationHandle handle, long count) throws IOException {
+        try {
+            handle.throttle(count);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttling the transfer");
+        }
+    }
+
+    static class CountingRequestBody extends RequestBody {
+
+        private final RequestBody delegate;
+        private final OperationHandle handle;
+
+        CountingRequestBody(RequestBody delegate, OperationHandle handle) {
+            this.delegate = delegate;
+            this.handle = handle;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            BufferedSink countingSink = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    handle.addBytesSent(byteCount);
+                    throttle(handle, byteCount);
+                }
+            });
+            delegate.writeTo(countingSink);
+            countingSink.flush();
+        }
+    }
+
+    private static class CountingResponseBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        CountingResponseBody(ResponseBody delegate, OperationHandle handle) {
+            this.delegate = delegate;
+            source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        handle.addBytesReceived(read);
+                        throttle(handle, read);
+                    }
+                    return read;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import edu.stanford.protege.metaproject.impl.ProjectIdImpl;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.protege.editor.owl.client.api.UserInfo;
+import org.protege.editor.owl.server.api.CommitBundle;
+import org.protege.editor.owl.server.policy.CommitBundleImpl;
+import org.protege.editor.owl.server.versioning.ChangeHistoryImpl;
+import org.protege.editor.owl.server.versioning.Commit;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.protege.editor.owl.server.versioning.api.RevisionMetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+import static org.protege.editor.owl.server.http.ServerEndpoints.COMMIT;
+
+public class ChunkedCommitTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final MockWebServer server = new MockWebServer();
+
+	private LocalHttpClient client;
+
+	private ProjectId projectId;
+
+	private CommitBundle commitBundle;
+
+	@Before
+	public void setUp() throws Exception {
+		server.start();
+		String serverAddress = server.url("/").toString();
+		// no retries by OkHttp itself, the client is to recover from the failed chunks
+		client = new LocalHttpClient(new OkHttpClient.Builder().retryOnConnectionFailure(false).build(),
+				serverAddress.substring(0, serverAddress.length() - 1),
+				new UserInfo("bob", "Bob", "bob@example.org", "nonce"));
+		projectId = new ProjectIdImpl(folder.getRoot().getAbsolutePath());
+		Files.write(new File(folder.getRoot(), "history-snapshot-checksum").toPath(),
+				"checksum".getBytes(StandardCharsets.UTF_8));
+		TestOntology test = new TestOntology();
+		RevisionMetadata metadata = new RevisionMetadata("bob", "Bob", "bob@example.org", "Bulk import");
+		// one change more than fits in a chunk
+		commitBundle = new CommitBundleImpl(DocumentRevision.START_REVISION,
+				new Commit(metadata, test.additions("C", 50001)));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		server.shutdown();
+	}
+
+	private static MockResponse serialized(Object object) throws IOException {
+		Buffer body = new Buffer();
+		try (ObjectOutputStream oos = new ObjectOutputStream(body.outputStream())) {
+			oos.writeObject(object);
+		}
+		return new MockResponse().setBody(body);
+	}
+
+	@Test
+	public void sendsTheCommitInOneRequestWithoutMultiPartSupport() throws Exception {
+		server.enqueue(new MockResponse().setResponseCode(404));
+		server.enqueue(serialized(ChangeHistoryImpl.createEmptyChangeHistory()));
+		server.enqueue(serialized(ChangeHistoryImpl.createEmptyChangeHistory()));
+		assertNotNull(client.commit(projectId, commitBundle));
+		assertEquals(COMMIT + "/begin", server.takeRequest().getPath());
+		assertEquals(COMMIT, server.takeRequest().getPath());
+		// the server is not asked about multi-part commits again
+		assertNotNull(client.commit(projectId, commitBundle));
+		assertEquals(COMMIT, server.takeRequest().getPath());
+	}
+
+	@Test
+	public void resumesFromTheChunkTheServerIsMissing() throws Exception {
+		server.enqueue(serialized("session"));
+		server.enqueue(new MockResponse());
+		server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+		server.enqueue(serialized(1));
+		server.enqueue(new MockResponse());
+		server.enqueue(serialized(ChangeHistoryImpl.createEmptyChangeHistory()));
+		assertNotNull(client.commit(projectId, commitBundle));
+		assertEquals(COMMIT + "/begin", server.takeRequest().getPath());
+		assertEquals(COMMIT + "/chunk?session=session&index=0", server.takeRequest().getPath());
+		assertEquals(COMMIT + "/chunk?session=session&index=1", server.takeRequest().getPath());
+		assertEquals(COMMIT + "/status", server.takeRequest().getPath());
+		assertEquals(COMMIT + "/chunk?session=session&index=1", server.takeRequest().getPath());
+		assertEquals(COMMIT + "/finish", server.takeRequest().getPath());
+	}
+}
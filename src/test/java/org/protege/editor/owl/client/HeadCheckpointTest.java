@@ -0,0 +1,101 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.impl.ProjectIdImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class HeadCheckpointTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static final DocumentRevision BASE_REVISION = DocumentRevision.START_REVISION.next(10);
+
+	private static final DocumentRevision REVISION = DocumentRevision.START_REVISION.next(25);
+
+	private TestOntology test;
+
+	private HeadCheckpoint checkpoint;
+
+	@Before
+	public void setUp() throws Exception {
+		test = new TestOntology();
+		test.getManager().applyChanges(test.additions("C", 100));
+		checkpoint = new HeadCheckpoint(new ProjectIdImpl(folder.getRoot().getAbsolutePath()));
+	}
+
+	private File file(String name) {
+		return new File(folder.getRoot(), name);
+	}
+
+	private void write() throws Exception {
+		checkpoint.write(SegmentedSnapShot.Contents.of(test.getOntology()), BASE_REVISION, REVISION, "checksum");
+	}
+
+	@Test
+	public void hasNoRevisionWithoutACheckpoint() {
+		assertEquals(Optional.empty(), checkpoint.getRevision("checksum"));
+		assertEquals(DocumentRevision.START_REVISION, checkpoint.getBaseRevision());
+		assertEquals(0, checkpoint.getSize());
+	}
+
+	@Test
+	public void loadsWhatWasWritten() throws Exception {
+		write();
+		assertEquals(Optional.of(REVISION), checkpoint.getRevision("checksum"));
+		assertEquals(BASE_REVISION, checkpoint.getBaseRevision());
+		assertTrue(checkpoint.getSize() > 0);
+		OWLOntology loaded = checkpoint.load(OWLManager.createOWLOntologyManager());
+		assertEquals(test.getOntology().getAxioms(), loaded.getAxioms());
+	}
+
+	@Test
+	public void discardsACheckpointOfAnotherSnapshot() throws Exception {
+		write();
+		assertEquals(Optional.empty(), checkpoint.getRevision("other"));
+		assertFalse(file("history-checkpoint").exists());
+		assertFalse(file("history-checkpoint-tag").exists());
+	}
+
+	@Test
+	public void discardsACheckpointWithACorruptedTag() throws Exception {
+		write();
+		Files.write(file("history-checkpoint-tag").toPath(), "25".getBytes(StandardCharsets.UTF_8));
+		assertEquals(Optional.empty(), checkpoint.getRevision("checksum"));
+		assertFalse(file("history-checkpoint").exists());
+	}
+
+	@Test
+	public void ignoresACheckpointWithoutTag() throws Exception {
+		write();
+		assertTrue(file("history-checkpoint-tag").delete()); // e.g., interrupted while being replaced
+		assertEquals(Optional.empty(), checkpoint.getRevision("checksum"));
+	}
+
+	@Test
+	public void ignoresATagWithoutCheckpoint() throws Exception {
+		write();
+		assertTrue(file("history-checkpoint").delete());
+		assertEquals(Optional.empty(), checkpoint.getRevision("checksum"));
+	}
+
+	@Test
+	public void takesOldTagsToStartFromTheFirstRevision() throws Exception {
+		write();
+		Files.write(file("history-checkpoint-tag").toPath(), "25\nchecksum".getBytes(StandardCharsets.UTF_8));
+		assertEquals(Optional.of(REVISION), checkpoint.getRevision("checksum"));
+		assertEquals(DocumentRevision.START_REVISION, checkpoint.getBaseRevision());
+	}
+}
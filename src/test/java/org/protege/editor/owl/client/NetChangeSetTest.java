@@ -0,0 +1,101 @@
+package org.protege.editor.owl.client;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class NetChangeSetTest {
+
+	private OWLOntology ontology;
+
+	private OWLAxiom axiomA;
+
+	private OWLAxiom axiomB;
+
+	@Before
+	public void setUp() throws OWLOntologyCreationException {
+		TestOntology test = new TestOntology();
+		ontology = test.getOntology();
+		axiomA = test.declaration("A");
+		axiomB = test.declaration("B");
+	}
+
+	@Test
+	public void keepsChangesInTheOrderTheyWereMade() {
+		NetChangeSet netChanges = new NetChangeSet();
+		netChanges.add(new AddAxiom(ontology, axiomB));
+		netChanges.add(new AddAxiom(ontology, axiomA));
+		assertEquals(Arrays.asList(new AddAxiom(ontology, axiomB), new AddAxiom(ontology, axiomA)),
+				netChanges.getChanges());
+	}
+
+	@Test
+	public void addingAndRemovingAnAxiomCancelsOut() {
+		NetChangeSet netChanges = new NetChangeSet();
+		netChanges.add(new AddAxiom(ontology, axiomA));
+		netChanges.add(new RemoveAxiom(ontology, axiomA));
+		assertTrue(netChanges.isEmpty());
+	}
+
+	@Test
+	public void settingTheOntologyIdBackCancelsOut() {
+		OWLOntologyID originalId = ontology.getOntologyID();
+		IRI otherIri = IRI.create("http://example.org/other");
+		NetChangeSet netChanges = new NetChangeSet();
+		netChanges.add(new SetOntologyID(ontology, new OWLOntologyID(Optional.of(otherIri), Optional.empty())));
+		assertEquals(1, netChanges.size());
+		netChanges.add(new SetOntologyID(ontology, originalId));
+		assertTrue(netChanges.isEmpty());
+	}
+
+	@Test
+	public void sharesTheChangeListUntilTheNextChange() {
+		NetChangeSet netChanges = new NetChangeSet();
+		netChanges.add(new AddAxiom(ontology, axiomA));
+		List<OWLOntologyChange> changes = netChanges.getChanges();
+		assertSame(changes, netChanges.getChanges());
+		netChanges.add(new AddAxiom(ontology, axiomB));
+		assertNotSame(changes, netChanges.getChanges());
+		assertEquals(1, changes.size());
+	}
+
+	@Test
+	public void rebaseDropsTheCommittedChanges() {
+		NetChangeSet netChanges = new NetChangeSet();
+		netChanges.add(new AddAxiom(ontology, axiomA));
+		netChanges.add(new AddAxiom(ontology, axiomB));
+		netChanges.rebaseOnto(Collections.singletonList(new AddAxiom(ontology, axiomA)));
+		assertEquals(Collections.singletonList(new AddAxiom(ontology, axiomB)), netChanges.getChanges());
+	}
+
+	@Test
+	public void rebaseKeepsARevertOfACommittedChange() {
+		NetChangeSet netChanges = new NetChangeSet();
+		netChanges.add(new AddAxiom(ontology, axiomA));
+		// committed while the addition was still pending, then undone locally
+		List<OWLOntologyChange> committed = Collections.singletonList(new AddAxiom(ontology, axiomA));
+		netChanges.add(new RemoveAxiom(ontology, axiomA));
+		netChanges.rebaseOnto(committed);
+		assertEquals(Collections.singletonList(new RemoveAxiom(ontology, axiomA)), netChanges.getChanges());
+	}
+
+	@Test
+	public void rebaseKeepsChangesMadeAfterTheCommit() {
+		NetChangeSet netChanges = new NetChangeSet();
+		netChanges.add(new AddAxiom(ontology, axiomA));
+		List<OWLOntologyChange> committed = netChanges.getChanges();
+		netChanges.add(new AddAxiom(ontology, axiomB));
+		netChanges.rebaseOnto(committed);
+		assertEquals(Collections.singletonList(new AddAxiom(ontology, axiomB)), netChanges.getChanges());
+		netChanges.add(new RemoveAxiom(ontology, axiomA));
+		assertEquals(Arrays.asList(new AddAxiom(ontology, axiomB), new RemoveAxiom(ontology, axiomA)),
+				netChanges.getChanges());
+	}
+}
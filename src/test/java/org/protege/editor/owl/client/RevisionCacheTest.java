@@ -0,0 +1,61 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.impl.ProjectIdImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class RevisionCacheTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private RevisionCache cache;
+
+	private File cacheFile;
+
+	@Before
+	public void setUp() {
+		cache = new RevisionCache(new ProjectIdImpl(folder.getRoot().getAbsolutePath()));
+		cacheFile = new File(folder.getRoot(), "history-revisions");
+	}
+
+	@Test
+	public void loadsNothingWithoutACache() {
+		assertFalse(cache.load("checksum").isPresent());
+	}
+
+	@Test
+	public void discardsACacheOfAnotherSnapshot() throws IOException {
+		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(cacheFile))) {
+			oos.writeObject("other");
+			oos.writeObject("not a change history");
+		}
+		assertFalse(cache.load("checksum").isPresent());
+		assertFalse(cacheFile.exists());
+	}
+
+	@Test
+	public void discardsACorruptedCache() throws IOException {
+		Files.write(cacheFile.toPath(), "not a revision cache".getBytes(StandardCharsets.UTF_8));
+		assertFalse(cache.load("checksum").isPresent());
+		assertFalse(cacheFile.exists());
+	}
+
+	@Test
+	public void discardsACacheThatIsNoChangeHistory() throws IOException {
+		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(cacheFile))) {
+			oos.writeObject("checksum");
+			oos.writeObject("not a change history");
+		}
+		assertFalse(cache.load("checksum").isPresent());
+		assertFalse(cacheFile.exists());
+	}
+}
@@ -0,0 +1,84 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import edu.stanford.protege.metaproject.impl.ProjectIdImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class RevisionTagTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static final DocumentRevision REVISION = DocumentRevision.START_REVISION.next(42);
+
+	private static final DocumentRevision BASE_REVISION = DocumentRevision.START_REVISION.next(7);
+
+	private File file;
+
+	@Before
+	public void setUp() {
+		file = new File(folder.getRoot(), "tag");
+	}
+
+	@Test
+	public void writesOneValuePerLine() throws IOException {
+		new RevisionTag(REVISION, "checksum", Optional.of(BASE_REVISION)).write(file);
+		assertEquals("42\nchecksum\n7", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		assertFalse(new File(file.getAbsolutePath() + ".tmp").exists());
+	}
+
+	@Test
+	public void readsBackWhatItWrote() throws IOException {
+		new RevisionTag(REVISION, "checksum", Optional.of(BASE_REVISION)).write(file);
+		RevisionTag tag = RevisionTag.read(file).get();
+		assertEquals(REVISION, tag.getRevision());
+		assertEquals(Optional.of(BASE_REVISION), tag.getBaseRevision());
+		assertTrue(tag.isOnSnapshot("checksum"));
+		assertFalse(tag.isOnSnapshot("other"));
+	}
+
+	@Test
+	public void readsATagWithoutBaseRevision() throws IOException {
+		new RevisionTag(REVISION, "checksum", Optional.empty()).write(file);
+		assertEquals(Optional.empty(), RevisionTag.read(file).get().getBaseRevision());
+	}
+
+	@Test
+	public void readsNothingWithoutAFile() throws IOException {
+		assertFalse(RevisionTag.read(file).isPresent());
+	}
+
+	@Test(expected = IOException.class)
+	public void failsOnAnIncompleteTag() throws IOException {
+		Files.write(file.toPath(), "42".getBytes(StandardCharsets.UTF_8));
+		RevisionTag.read(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void failsOnAMalformedRevision() throws IOException {
+		Files.write(file.toPath(), "forty-two\nchecksum".getBytes(StandardCharsets.UTF_8));
+		RevisionTag.read(file);
+	}
+
+	@Test
+	public void searchIndexTagDiscardsAStaleTag() {
+		ProjectId projectId = new ProjectIdImpl(folder.getRoot().getAbsolutePath());
+		SearchIndexTag tag = new SearchIndexTag(projectId);
+		tag.write(REVISION, "checksum");
+		assertEquals(Optional.of(REVISION), tag.getRevision("checksum"));
+		assertEquals(Optional.empty(), tag.getRevision("other"));
+		assertEquals(Optional.empty(), tag.getRevision("checksum"));
+	}
+}
@@ -0,0 +1,86 @@
+package org.protege.editor.owl.client;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.binaryowl.BinaryOWLOntologyDocumentSerializer;
+import org.semanticweb.binaryowl.owlapi.OWLOntologyWrapper;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class SegmentedSnapShotTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private TestOntology test;
+
+	@Before
+	public void setUp() throws OWLOntologyCreationException {
+		test = new TestOntology();
+		OWLDataFactory df = test.getDataFactory();
+		test.getManager().applyChange(new AddImport(test.getOntology(),
+				df.getOWLImportsDeclaration(IRI.create("http://example.org/imported"))));
+		test.getManager().applyChange(new AddOntologyAnnotation(test.getOntology(),
+				df.getOWLAnnotation(df.getRDFSComment(), df.getOWLLiteral("comment"))));
+	}
+
+	private static void assertSameContents(OWLOntology expected, OWLOntology actual) {
+		assertEquals(expected.getOntologyID(), actual.getOntologyID());
+		assertEquals(expected.getImportsDeclarations(), actual.getImportsDeclarations());
+		assertEquals(expected.getAnnotations(), actual.getAnnotations());
+		assertEquals(expected.getAxioms(), actual.getAxioms());
+	}
+
+	@Test
+	public void readsBackWhatItWrote() throws Exception {
+		test.getManager().applyChanges(test.additions("C", 1000));
+		File file = folder.newFile();
+		SegmentedSnapShot.write(test.getOntology(), file);
+		assertTrue(SegmentedSnapShot.isSegmented(file));
+		assertSameContents(test.getOntology(), SegmentedSnapShot.read(OWLManager.createOWLOntologyManager(), file));
+	}
+
+	@Test
+	public void readsBackAcrossSegments() throws Exception {
+		test.getManager().applyChanges(test.additions("C", 250000)); // three segments
+		File file = folder.newFile();
+		SegmentedSnapShot.write(test.getOntology(), file);
+		assertSameContents(test.getOntology(), SegmentedSnapShot.read(OWLManager.createOWLOntologyManager(), file));
+	}
+
+	@Test
+	public void readsThePlainLayout() throws Exception {
+		test.getManager().applyChanges(test.additions("C", 1000));
+		File file = folder.newFile();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			new BinaryOWLOntologyDocumentSerializer().write(new OWLOntologyWrapper(test.getOntology()), out);
+		}
+		assertFalse(SegmentedSnapShot.isSegmented(file));
+		assertSameContents(test.getOntology(), SegmentedSnapShot.read(OWLManager.createOWLOntologyManager(), file));
+	}
+
+	@Test
+	public void removesTheOntologyOfATruncatedFile() throws Exception {
+		test.getManager().applyChanges(test.additions("C", 250000));
+		File file = folder.newFile();
+		SegmentedSnapShot.write(test.getOntology(), file);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() / 2);
+		}
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		try {
+			SegmentedSnapShot.read(manager, file);
+			fail("A truncated snapshot was read");
+		} catch (IOException e) {
+			assertTrue(manager.getOntologies().isEmpty());
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package org.protege.editor.owl.client;
+
+import edu.stanford.protege.metaproject.api.ProjectId;
+import edu.stanford.protege.metaproject.impl.ProjectIdImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.protege.editor.owl.server.versioning.api.DocumentRevision;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SyncPlannerTest {
+
+	private final ProjectId projectId = new ProjectIdImpl("test");
+
+	private TestOntology test;
+
+	private OWLOntology ontology;
+
+	private SyncPlanner planner;
+
+	@Before
+	public void setUp() throws OWLOntologyCreationException {
+		test = new TestOntology();
+		ontology = test.getOntology();
+		planner = new SyncPlanner();
+	}
+
+	private OWLAxiom declaration(String name) {
+		return test.declaration(name);
+	}
+
+	private List<OWLOntologyChange> additions(int count) {
+		return test.additions("C", count);
+	}
+
+	/*
+	 * Changes of which the given number of additions are removed again, i.e., cancel out
+	 */
+	private List<OWLOntologyChange> changesCancellingOut(int count, int cancelled) {
+		List<OWLOntologyChange> changes = new ArrayList<>(additions(count - cancelled / 2));
+		for (int i = 0; i < cancelled / 2; i++) {
+			changes.add(test.removal("C" + i));
+		}
+		return changes;
+	}
+
+	@Test
+	public void consolidatesUntilACancellationRatioIsObserved() {
+		assertFalse(planner.planCatchUp(projectId, 10000).isReplay());
+	}
+
+	@Test
+	public void replaysWhenNothingCancelsOut() {
+		planner.measure(additions(1000));
+		assertEquals(0.0, planner.estimateCancellationRatio(), 0.0);
+		assertTrue(planner.planCatchUp(projectId, 10000).isReplay());
+	}
+
+	@Test
+	public void consolidatesWhenChangesCancelOut() {
+		List<OWLOntologyChange> changes = new ArrayList<>();
+		for (OWLOntologyChange addition : additions(500)) {
+			changes.add(addition);
+			changes.add(new RemoveAxiom(ontology, ((AddAxiom) addition).getAxiom()));
+		}
+		planner.measure(changes);
+		assertEquals(1.0, planner.estimateCancellationRatio(), 0.0);
+		assertFalse(planner.planCatchUp(projectId, 10000).isReplay());
+	}
+
+	@Test
+	public void replaysUpToTheConsolidationThreshold() {
+		planner.measure(changesCancellingOut(1000, 40));
+		assertTrue(planner.estimateCancellationRatio() < SyncPlanner.CONSOLIDATION_THRESHOLD);
+		assertTrue(planner.planCatchUp(projectId, 10000).isReplay());
+	}
+
+	@Test
+	public void consolidatesAboveTheConsolidationThreshold() {
+		planner.measure(changesCancellingOut(1000, 60));
+		assertTrue(planner.estimateCancellationRatio() > SyncPlanner.CONSOLIDATION_THRESHOLD);
+		assertFalse(planner.planCatchUp(projectId, 10).isReplay());
+	}
+
+	@Test
+	public void observesTheCancellationRatioOnBothPaths() {
+		planner.measure(Arrays.asList(new AddAxiom(ontology, declaration("A")),
+				new RemoveAxiom(ontology, declaration("A"))));
+		planner.consolidate(Arrays.asList(new AddAxiom(ontology, declaration("B")),
+				new AddAxiom(ontology, declaration("C"))));
+		assertEquals(0.5, planner.estimateCancellationRatio(), 0.0);
+	}
+
+	@Test
+	public void consolidatesIntoTheNetChanges() {
+		List<OWLOntologyChange> consolidated = planner.consolidate(Arrays.asList(
+				new AddAxiom(ontology, declaration("A")),
+				new AddAxiom(ontology, declaration("B")),
+				new RemoveAxiom(ontology, declaration("A"))));
+		assertEquals(Collections.singletonList(new AddAxiom(ontology, declaration("B"))), consolidated);
+	}
+
+	@Test
+	public void jumpsToACheckpointFarFromTheSnapshot() {
+		DocumentRevision checkpointRevision = DocumentRevision.START_REVISION.next(1000);
+		assertFalse(planner.planOpen(projectId, DocumentRevision.START_REVISION, checkpointRevision, 5000, 1000)
+				.isReplay());
+	}
+
+	@Test
+	public void replaysAFewRevisionsOnTopOfTheSnapshot() {
+		DocumentRevision checkpointRevision = DocumentRevision.START_REVISION.next(2);
+		// 2 revisions of 20 changes each cost less to replay than the larger checkpoint to load
+		assertTrue(planner.planOpen(projectId, DocumentRevision.START_REVISION, checkpointRevision, 100000, 80000)
+				.isReplay());
+	}
+
+	@Test
+	public void countsTheRevisionsToReplayFromTheHistoryBase() {
+		DocumentRevision baseRevision = DocumentRevision.START_REVISION.next(1000);
+		DocumentRevision checkpointRevision = DocumentRevision.START_REVISION.next(1000);
+		// the snapshot is at the checkpoint revision already, loading it is cheaper
+		assertTrue(planner.planOpen(projectId, baseRevision, checkpointRevision, 5000, 1000).isReplay());
+	}
+}
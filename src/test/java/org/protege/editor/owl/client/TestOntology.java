@@ -0,0 +1,59 @@
+package org.protege.editor.owl.client;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An empty ontology in a manager of its own, with helpers to make the axioms and changes the
+ * tests work with.
+ */
+public class TestOntology {
+
+	public static final String IRI_BASE = "http://example.org/test";
+
+	private final OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+
+	private final OWLOntology ontology;
+
+	public TestOntology() throws OWLOntologyCreationException {
+		ontology = manager.createOntology(IRI.create(IRI_BASE));
+	}
+
+	public OWLOntologyManager getManager() {
+		return manager;
+	}
+
+	public OWLDataFactory getDataFactory() {
+		return manager.getOWLDataFactory();
+	}
+
+	public OWLOntology getOntology() {
+		return ontology;
+	}
+
+	public OWLAxiom declaration(String name) {
+		return getDataFactory().getOWLDeclarationAxiom(getDataFactory().getOWLClass(IRI.create(IRI_BASE + "#" + name)));
+	}
+
+	public OWLOntologyChange addition(String name) {
+		return new AddAxiom(ontology, declaration(name));
+	}
+
+	public OWLOntologyChange removal(String name) {
+		return new RemoveAxiom(ontology, declaration(name));
+	}
+
+	/**
+	 * Adds declarations of the classes with the given prefix, numbered from 0.
+	 */
+	public List<OWLOntologyChange> additions(String prefix, int count) {
+		List<OWLOntologyChange> changes = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			changes.add(addition(prefix + i));
+		}
+		return changes;
+	}
+}
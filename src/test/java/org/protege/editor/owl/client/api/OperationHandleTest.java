@@ -0,0 +1,42 @@
+package org.protege.editor.owl.client.api;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OperationHandleTest {
+
+	@Test
+	public void runsTheCancelActionsRegistered() {
+		OperationHandle handle = new OperationHandle("Test");
+		AtomicInteger cancelled = new AtomicInteger();
+		handle.onCancel(cancelled::incrementAndGet);
+		handle.cancel();
+		assertEquals(1, cancelled.get());
+		assertTrue(handle.isCancelled());
+	}
+
+	@Test
+	public void dropsTheCancelActionsOfClosedRegistrations() {
+		OperationHandle handle = new OperationHandle("Test");
+		AtomicInteger cancelled = new AtomicInteger();
+		for (int i = 0; i < 1000; i++) {
+			handle.onCancel(cancelled::incrementAndGet).close();
+		}
+		OperationHandle.Registration open = handle.onCancel(cancelled::incrementAndGet);
+		handle.cancel();
+		assertEquals(1, cancelled.get());
+		open.close();
+	}
+
+	@Test
+	public void runsTheCancelActionRightAwayOnceCancelled() {
+		OperationHandle handle = new OperationHandle("Test");
+		handle.cancel();
+		AtomicInteger cancelled = new AtomicInteger();
+		handle.onCancel(cancelled::incrementAndGet).close();
+		assertEquals(1, cancelled.get());
+	}
+}
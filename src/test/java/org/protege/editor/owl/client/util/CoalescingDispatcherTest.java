@@ -0,0 +1,70 @@
+package org.protege.editor.owl.client.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CoalescingDispatcherTest {
+
+	private static final long TIMEOUT = 5; // in seconds
+
+	private final BlockingQueue<int[]> deliveries = new LinkedBlockingQueue<>();
+
+	private CoalescingDispatcher dispatcher;
+
+	@After
+	public void tearDown() {
+		if (dispatcher != null) {
+			dispatcher.dispose();
+		}
+	}
+
+	private CoalescingDispatcher createDispatcher(long windowMillis) {
+		dispatcher = new CoalescingDispatcher("Test Notifications", windowMillis, Runnable::run,
+				(eventCount, changeCount) -> deliveries.add(new int[] { eventCount, changeCount }));
+		return dispatcher;
+	}
+
+	@Test
+	public void mergesTheSignalsOfOneWindow() throws InterruptedException {
+		CoalescingDispatcher dispatcher = createDispatcher(500);
+		for (int i = 1; i <= 5; i++) {
+			dispatcher.signal(i);
+		}
+		int[] delivery = deliveries.poll(TIMEOUT, TimeUnit.SECONDS);
+		assertNotNull(delivery);
+		assertEquals(5, delivery[0]);
+		assertEquals(15, delivery[1]);
+		assertNull(deliveries.poll(1, TimeUnit.SECONDS));
+		assertEquals(5, dispatcher.getSignalledCount());
+		assertEquals(1, dispatcher.getDeliveredCount());
+		assertEquals(4, dispatcher.getSuppressedCount());
+	}
+
+	@Test
+	public void deliversTheSignalsOfLaterWindowsSeparately() throws InterruptedException {
+		CoalescingDispatcher dispatcher = createDispatcher(10);
+		dispatcher.signal(1);
+		int[] first = deliveries.poll(TIMEOUT, TimeUnit.SECONDS);
+		dispatcher.signal(2);
+		int[] second = deliveries.poll(TIMEOUT, TimeUnit.SECONDS);
+		assertNotNull(first);
+		assertNotNull(second);
+		assertEquals(1, first[1]);
+		assertEquals(2, second[1]);
+		assertEquals(2, dispatcher.getDeliveredCount());
+		assertEquals(0, dispatcher.getSuppressedCount());
+	}
+
+	@Test
+	public void deliversNothingWithoutSignals() throws InterruptedException {
+		createDispatcher(10);
+		assertNull(deliveries.poll(200, TimeUnit.MILLISECONDS));
+		assertEquals(0, dispatcher.getDeliveredCount());
+	}
+}
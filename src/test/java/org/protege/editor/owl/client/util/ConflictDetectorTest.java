@@ -0,0 +1,107 @@
+package org.protege.editor.owl.client.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.protege.editor.owl.client.TestOntology;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ConflictDetectorTest {
+
+	private TestOntology test;
+
+	private OWLOntology ontology;
+
+	private OWLDataFactory df;
+
+	@Before
+	public void setUp() throws OWLOntologyCreationException {
+		test = new TestOntology();
+		df = test.getDataFactory();
+		ontology = test.getOntology();
+	}
+
+	private OWLAxiom declaration(String name) {
+		return test.declaration(name);
+	}
+
+	@Test
+	public void findsNoConflictsBetweenUnrelatedChanges() {
+		List<OWLOntologyChange> local = Collections.singletonList(new AddAxiom(ontology, declaration("A")));
+		List<OWLOntologyChange> remote = Collections.singletonList(new AddAxiom(ontology, declaration("B")));
+		assertTrue(new ConflictDetector().getConflicts(local, remote).isEmpty());
+	}
+
+	@Test
+	public void findsChangesToTheSameAxiom() {
+		OWLOntologyChange localChange = new AddAxiom(ontology, declaration("A"));
+		List<OWLOntologyChange> local = Arrays.asList(localChange, new AddAxiom(ontology, declaration("B")));
+		List<OWLOntologyChange> remote = Collections.singletonList(new RemoveAxiom(ontology, declaration("A")));
+		assertEquals(Collections.singletonList(localChange), new ConflictDetector().getConflicts(local, remote));
+	}
+
+	@Test
+	public void reportsTheOntologyIdFirstThenImportsAnnotationsAndAxioms() {
+		OWLOntologyChange axiomChange = new AddAxiom(ontology, declaration("A"));
+		OWLOntologyChange annotationChange = new AddOntologyAnnotation(ontology,
+				df.getOWLAnnotation(df.getRDFSComment(), df.getOWLLiteral("comment")));
+		OWLOntologyChange importChange = new AddImport(ontology,
+				df.getOWLImportsDeclaration(IRI.create("http://example.org/imported")));
+		OWLOntologyChange idChange = new SetOntologyID(ontology,
+				new OWLOntologyID(Optional.of(IRI.create("http://example.org/local")), Optional.empty()));
+		List<OWLOntologyChange> local = Arrays.asList(axiomChange, annotationChange, importChange, idChange);
+		List<OWLOntologyChange> remote = Arrays.asList(
+				new SetOntologyID(ontology,
+						new OWLOntologyID(Optional.of(IRI.create("http://example.org/remote")), Optional.empty())),
+				new RemoveAxiom(ontology, declaration("A")),
+				new RemoveImport(ontology, df.getOWLImportsDeclaration(IRI.create("http://example.org/imported"))),
+				new RemoveOntologyAnnotation(ontology,
+						df.getOWLAnnotation(df.getRDFSComment(), df.getOWLLiteral("comment"))));
+		assertEquals(Arrays.asList(idChange, importChange, annotationChange, axiomChange),
+				new ConflictDetector().getConflicts(local, remote));
+	}
+
+	@Test
+	public void reportsTheLastLocalChangeOfAnAxiom() {
+		OWLOntologyChange lastChange = new RemoveAxiom(ontology, declaration("A"));
+		List<OWLOntologyChange> local = Arrays.asList(new AddAxiom(ontology, declaration("A")), lastChange);
+		List<OWLOntologyChange> remote = Collections.singletonList(new AddAxiom(ontology, declaration("A")));
+		assertEquals(Collections.singletonList(lastChange), new ConflictDetector().getConflicts(local, remote));
+	}
+
+	@Test
+	public void indexesNewLocalChangesAgain() {
+		ConflictDetector detector = new ConflictDetector();
+		List<OWLOntologyChange> remote = Arrays.asList(new RemoveAxiom(ontology, declaration("A")),
+				new RemoveAxiom(ontology, declaration("B")));
+		List<OWLOntologyChange> first = Collections.singletonList(new AddAxiom(ontology, declaration("A")));
+		List<OWLOntologyChange> second = Collections.singletonList(new AddAxiom(ontology, declaration("B")));
+		assertEquals(first, detector.getConflicts(first, remote));
+		assertEquals(second, detector.getConflicts(second, remote));
+	}
+
+	@Test
+	public void probesInParallelWithTheSameOutcome() {
+		List<OWLOntologyChange> local = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			local.add(new AddAxiom(ontology, declaration("L" + i)));
+		}
+		List<OWLOntologyChange> remote = new ArrayList<>();
+		for (int i = 0; i < 50000; i++) {
+			// every tenth local change conflicts, the rest of the remote changes are unrelated
+			remote.add(new RemoveAxiom(ontology, declaration((i % 500 == 0 ? "L" : "R") + i / 50)));
+		}
+		List<OWLOntologyChange> sequential = new ConflictDetector(new ForkJoinPool(1)).getConflicts(local, remote);
+		List<OWLOntologyChange> parallel = new ConflictDetector(new ForkJoinPool(4)).getConflicts(local, remote);
+		assertEquals(100, sequential.size());
+		assertEquals(sequential, parallel);
+	}
+}
@@ -0,0 +1,54 @@
+package org.protege.editor.owl.client.util;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Sink;
+import org.junit.Test;
+import org.protege.editor.owl.client.api.OperationHandle;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class GzipRequestBodyTest {
+
+	private static final MediaType TEXT = MediaType.parse("text/plain");
+
+	private static String content() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			content.append("SubClassOf(:C").append(i).append(" :D)\n");
+		}
+		return content.toString();
+	}
+
+	private static String gunzip(Buffer compressed) throws IOException {
+		return Okio.buffer(new GzipSource(compressed)).readUtf8();
+	}
+
+	@Test
+	public void leavesTheSinkOpen() throws IOException {
+		Buffer buffer = new Buffer();
+		BufferedSink sink = Okio.buffer((Sink) buffer);
+		new GzipRequestBody(RequestBody.create(TEXT, content())).writeTo(sink);
+		sink.flush(); // fails on a closed sink
+		assertEquals(content(), gunzip(buffer));
+	}
+
+	@Test
+	public void countsTheCompressedBytesSent() throws IOException {
+		OperationHandle handle = new OperationHandle("Test Commit");
+		RequestBody body = new ProgressInterceptor.CountingRequestBody(
+				new GzipRequestBody(RequestBody.create(TEXT, content())), handle);
+		Buffer sink = new Buffer();
+		body.writeTo(sink);
+		long sent = sink.size();
+		assertEquals(sent, handle.getBytesTransferred());
+		assertTrue(sent < content().length());
+		assertEquals(content(), gunzip(sink));
+	}
+}